@@ -149,7 +149,7 @@ public class MainActivity extends AppCompatActivity
         if (!resultOk || TextUtils.isEmpty(url)) {
             return;
         }
-        Provider.loadInfo(url, this);
+        Provider.loadInfo(this, url, this);
     }
 
     private class RefreshAction implements Runnable {
@@ -38,17 +38,24 @@ import com.budiyev.rssreader.R;
 import com.budiyev.rssreader.adapter.MessagesAdapter;
 import com.budiyev.rssreader.helper.ThreadHelper;
 import com.budiyev.rssreader.model.Provider;
+import com.budiyev.rssreader.model.Repository;
 import com.budiyev.rssreader.model.callback.FeedCallback;
 import com.budiyev.rssreader.model.data.Feed;
+import com.budiyev.rssreader.model.data.Message;
+
+import java.util.List;
 
 public class MessagesActivity extends AppCompatActivity implements FeedCallback {
     private static final String EXTRA_FEED_POSITION = "feed_position";
+    private static final String EXTRA_FEED_GUID = "feed_guid";
     public static final String EXTRA_FEED_URL = "feed_url";
+    private static final String PIN_OWNER_PREFIX = "messages_activity_";
     private String mUrl;
     private LinearLayoutManager mItemsLayoutManager;
     private MessagesAdapter mAdapter;
     private ActionBar mActionBar;
     private int mLastPosition = RecyclerView.NO_POSITION;
+    private String mLastGuid;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -64,6 +71,7 @@ public class MessagesActivity extends AppCompatActivity implements FeedCallback
             url = savedInstanceState.getString(EXTRA_FEED_URL);
             mLastPosition =
                     savedInstanceState.getInt(EXTRA_FEED_POSITION, RecyclerView.NO_POSITION);
+            mLastGuid = savedInstanceState.getString(EXTRA_FEED_GUID);
         }
         if (url == null) {
             url = getIntent().getStringExtra(EXTRA_FEED_URL);
@@ -80,6 +88,18 @@ public class MessagesActivity extends AppCompatActivity implements FeedCallback
         Provider.loadFeed(this, url, this);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        Repository.pinFeed(this, getPinOwner(), mUrl);
+    }
+
+    @Override
+    protected void onStop() {
+        Repository.pinFeed(this, getPinOwner(), null);
+        super.onStop();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -89,8 +109,12 @@ public class MessagesActivity extends AppCompatActivity implements FeedCallback
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         outState.putString(EXTRA_FEED_URL, mUrl);
-        outState.putInt(EXTRA_FEED_POSITION,
-                mItemsLayoutManager.findFirstCompletelyVisibleItemPosition());
+        int position = mItemsLayoutManager.findFirstCompletelyVisibleItemPosition();
+        outState.putInt(EXTRA_FEED_POSITION, position);
+        List<Message> messages = mAdapter.getItems();
+        if (messages != null && position >= 0 && position < messages.size()) {
+            outState.putString(EXTRA_FEED_GUID, messages.get(position).getGuid());
+        }
         super.onSaveInstanceState(outState);
     }
 
@@ -108,7 +132,12 @@ public class MessagesActivity extends AppCompatActivity implements FeedCallback
         if (feed == null) {
             return;
         }
-        ThreadHelper.runOnMainThread(new RefreshAction(feed, mLastPosition));
+        // Message that was shown may have moved if the feed was updated
+        int position = feed.indexOf(mLastGuid);
+        if (position == -1) {
+            position = mLastPosition;
+        }
+        ThreadHelper.runOnMainThread(new RefreshAction(feed, position));
     }
 
     @Override
@@ -119,6 +148,11 @@ public class MessagesActivity extends AppCompatActivity implements FeedCallback
         ThreadHelper.runOnMainThread(new RefreshAction(feed, RecyclerView.NO_POSITION));
     }
 
+    @NonNull
+    private String getPinOwner() {
+        return PIN_OWNER_PREFIX + System.identityHashCode(this);
+    }
+
     private class RefreshAction implements Runnable {
         private final Feed mFeed;
         private final int mPosition;
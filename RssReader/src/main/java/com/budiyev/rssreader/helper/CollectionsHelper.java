@@ -24,9 +24,6 @@
 package com.budiyev.rssreader.helper;
 
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-
-import java.util.List;
 
 public final class CollectionsHelper {
     private CollectionsHelper() {
@@ -47,68 +44,4 @@ public final class CollectionsHelper {
         }
         return false;
     }
-
-    /**
-     * Search {@code item} in {@code list}, starting from specified {@code position}
-     * in both directions
-     * <br>
-     * Such approach is effective if approximate position of an element in the list is known
-     * <br>
-     * Starting from {@code position} it checks {@code step} of elements on the left
-     * and at the right, if {@code item} is not found among them, another {@code step} of
-     * elements on the left and at the right, and so on while {@code item} found or list ended
-     *
-     * @param list          List of items
-     * @param item          Item to search for
-     * @param condition     Condition searching item to satisfy to
-     * @param position      Search start position
-     * @param step          Search step
-     * @param maxIterations Maximum search iterations, {@code -1} for unrestricted
-     * @return Position of {@code item} in {@code list} or {@code -1} if {@code item} is not found
-     */
-    public static <T> int search(@NonNull List<T> list, @Nullable T item,
-            @NonNull SearchCondition<T> condition, int position, int step, int maxIterations) {
-        if (position < 0 || step < 1) {
-            throw new IllegalArgumentException();
-        }
-        if (condition.test(item, list.get(position))) {
-            return position;
-        } else {
-            int listSize = list.size();
-            int currentOffset = step;
-            int previousOffset = 0;
-            for (int iteration = 0; ; ) {
-                int start = position - currentOffset;
-                if (start < 0) {
-                    start = 0;
-                }
-                int end = position + currentOffset + 1;
-                if (end > listSize) {
-                    end = listSize;
-                }
-                int startOffset = position - previousOffset - 1;
-                for (int i = startOffset; i >= start; i--) {
-                    if (condition.test(item, list.get(i))) {
-                        return i;
-                    }
-                }
-                int endOffset = position + previousOffset + 1;
-                for (int i = endOffset; i < end; i++) {
-                    if (condition.test(item, list.get(i))) {
-                        return i;
-                    }
-                }
-                previousOffset = currentOffset;
-                currentOffset += step;
-                iteration++;
-                if (iteration == maxIterations || start == 0 && end == listSize) {
-                    return -1;
-                }
-            }
-        }
-    }
-
-    public interface SearchCondition<T> {
-        boolean test(T item, T candidate);
-    }
 }
@@ -26,22 +26,28 @@ package com.budiyev.rssreader.helper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
 
 /**
  * Parser of CSV format
  */
 public final class CsvParser {
-    private static final String QUOTE_STRING = "\"";
-    private static final String DOUBLE_QUOTE_STRING = "\"\"";
     private static final char QUOTE = '\"';
     private static final char LF = '\n';
     private static final int BUFFER_SIZE = 8192;
+    private static final int STATE_CELL_START = 0;
+    private static final int STATE_UNQUOTED = 1;
+    private static final int STATE_QUOTED = 2;
+    /**
+     * Quote in quoted cell, it is either closing, escaping or literal
+     */
+    private static final int STATE_QUOTE = 3;
 
     private CsvParser() {
     }
@@ -54,23 +60,12 @@ public final class CsvParser {
      * @param separator    Column separator
      * @param charset      Charset name
      * @return true if success, false otherwise
+     * @see CsvWriter
      */
     public static boolean encode(@NonNull StringTable table, @NonNull OutputStream outputStream,
             char separator, @NonNull String charset) {
-        try (BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(outputStream, charset))) {
-            for (StringRow row : table) {
-                int size = row.size();
-                for (int i = 0; i < size; i++) {
-                    writer.append(QUOTE)
-                            .append(row.cell(i).replace(QUOTE_STRING, DOUBLE_QUOTE_STRING))
-                            .append(QUOTE);
-                    if (i != size - 1) {
-                        writer.append(separator);
-                    }
-                }
-                writer.append(LF);
-            }
+        try (CsvWriter writer = new CsvWriter(outputStream, separator, charset)) {
+            encode(table, writer);
             return true;
         } catch (IOException e) {
             return false;
@@ -83,21 +78,16 @@ public final class CsvParser {
      * @param table     Table
      * @param separator Column separator
      * @return Encoded string
+     * @see CsvWriter
      */
     @NonNull
     public static String encode(@NonNull StringTable table, char separator) {
         StringBuilder stringBuilder = new StringBuilder();
-        for (StringRow row : table) {
-            int size = row.size();
-            for (int i = 0; i < size; i++) {
-                stringBuilder.append(QUOTE)
-                        .append(row.cell(i).replace(QUOTE_STRING, DOUBLE_QUOTE_STRING))
-                        .append(QUOTE);
-                if (i != size - 1) {
-                    stringBuilder.append(separator);
-                }
-            }
-            stringBuilder.append(LF);
+        try {
+            encode(table, new CsvWriter(stringBuilder, separator));
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new IllegalStateException(e);
         }
         return stringBuilder.toString();
     }
@@ -109,37 +99,15 @@ public final class CsvParser {
      * @param separator   Column separator
      * @param charset     Charset name
      * @return Table
+     * @see #parse(InputStream, char, String, RowVisitor)
      */
     @Nullable
     public static StringTable parse(@NonNull InputStream inputStream, char separator,
             @NonNull String charset) {
-        try (InputStreamReader reader = new InputStreamReader(inputStream, charset)) {
-            StringTable table = new StringTable();
-            StringBuilder row = new StringBuilder();
-            boolean inQuotes = false;
-            char[] buffer = new char[BUFFER_SIZE];
-            for (; ; ) {
-                int read = reader.read(buffer);
-                if (read == -1) {
-                    if (row.length() > 0) {
-                        table.add(parseRow(row.toString(), separator));
-                    }
-                    break;
-                }
-                for (int i = 0; i < read; i++) {
-                    if (buffer[i] == CsvParser.LF && !inQuotes) {
-                        table.add(parseRow(row.toString(), separator));
-                        row.delete(0, row.length());
-                    } else {
-                        if (buffer[i] == CsvParser.QUOTE) {
-                            inQuotes = !inQuotes;
-                        }
-                        row.append(buffer[i]);
-                    }
-                }
-            }
-            return table;
-        } catch (IOException e) {
+        TableBuilder builder = new TableBuilder();
+        if (parse(inputStream, separator, charset, builder)) {
+            return builder.mTable;
+        } else {
             return null;
         }
     }
@@ -150,61 +118,224 @@ public final class CsvParser {
      * @param string    Source string
      * @param separator Column separator
      * @return Table
+     * @see #parse(CharSequence, char, RowVisitor)
      */
     @NonNull
     public static StringTable parse(@NonNull String string, char separator) {
-        StringTable table = new StringTable();
-        StringBuilder row = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i = 0, l = string.length(); i < l; i++) {
-            char current = string.charAt(i);
-            if (current == CsvParser.LF && !inQuotes) {
-                table.add(parseRow(row.toString(), separator));
-                row.delete(0, row.length());
-            } else {
-                if (current == CsvParser.QUOTE) {
-                    inQuotes = !inQuotes;
+        TableBuilder builder = new TableBuilder();
+        parse(string, separator, builder);
+        return builder.mTable;
+    }
+
+    /**
+     * Parse CSV row by row, only the current row is kept in memory
+     *
+     * @param inputStream Source data stream
+     * @param separator   Column separator
+     * @param charset     Charset name
+     * @param visitor     Visitor of rows
+     * @return true if success, false otherwise
+     */
+    public static boolean parse(@NonNull InputStream inputStream, char separator,
+            @NonNull String charset, @NonNull RowVisitor visitor) {
+        try (InputStreamReader reader = new InputStreamReader(inputStream, charset)) {
+            parse(reader, separator, visitor);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parse CSV row by row
+     *
+     * @param string    Source string
+     * @param separator Column separator
+     * @param visitor   Visitor of rows
+     */
+    public static void parse(@NonNull CharSequence string, char separator,
+            @NonNull RowVisitor visitor) {
+        try {
+            parse(new StringReader(string.toString()), separator, visitor);
+        } catch (IOException e) {
+            // StringReader doesn't throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Single pass tokenizer, cells refer to the read buffer, row that isn't finished
+     * when the buffer is exhausted is moved to the start of the buffer before reading more,
+     * cells with escaped quotes are unescaped in place
+     */
+    private static void parse(@NonNull Reader reader, char separator,
+            @NonNull RowVisitor visitor) throws IOException {
+        CsvRow row = new CsvRow();
+        char[] buffer = new char[BUFFER_SIZE];
+        // Start and end of each cell of the current row
+        int[] cells = new int[32];
+        int cellsCount = 0;
+        int length = 0;
+        int position = 0;
+        int rowStart = 0;
+        int cellStart = 0;
+        // End of the cell content, lags behind the position after escaped quote
+        int cellEnd = 0;
+        int state = STATE_CELL_START;
+        for (; ; ) {
+            if (position == length) {
+                if (rowStart > 0) {
+                    length -= rowStart;
+                    System.arraycopy(buffer, rowStart, buffer, 0, length);
+                    for (int i = 0; i < cellsCount * 2; i++) {
+                        cells[i] -= rowStart;
+                    }
+                    position -= rowStart;
+                    cellStart -= rowStart;
+                    cellEnd -= rowStart;
+                    rowStart = 0;
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                int read = reader.read(buffer, length, buffer.length - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+            }
+            for (; position < length; position++) {
+                char current = buffer[position];
+                switch (state) {
+                    case STATE_CELL_START: {
+                        if (current == QUOTE) {
+                            cellStart = position + 1;
+                            cellEnd = cellStart;
+                            state = STATE_QUOTED;
+                            continue;
+                        } else if (current != separator && current != LF) {
+                            cellStart = position;
+                            cellEnd = position + 1;
+                            state = STATE_UNQUOTED;
+                            continue;
+                        }
+                        cellStart = position;
+                        cellEnd = position;
+                        break;
+                    }
+                    case STATE_UNQUOTED: {
+                        if (current != separator && current != LF) {
+                            cellEnd++;
+                            continue;
+                        }
+                        break;
+                    }
+                    case STATE_QUOTED: {
+                        if (current == QUOTE) {
+                            state = STATE_QUOTE;
+                        } else {
+                            if (cellEnd != position) {
+                                buffer[cellEnd] = current;
+                            }
+                            cellEnd++;
+                        }
+                        continue;
+                    }
+                    default: {
+                        if (current == separator || current == LF) {
+                            break;
+                        }
+                        // Escaped quote, or a quote that isn't followed by separator,
+                        // which is kept as is
+                        if (cellEnd != position - 1) {
+                            buffer[cellEnd] = QUOTE;
+                        }
+                        cellEnd++;
+                        if (current != QUOTE) {
+                            if (cellEnd != position) {
+                                buffer[cellEnd] = current;
+                            }
+                            cellEnd++;
+                        }
+                        state = STATE_QUOTED;
+                        continue;
+                    }
+                }
+                // End of the cell
+                if (cellsCount * 2 == cells.length) {
+                    cells = Arrays.copyOf(cells, cells.length * 2);
+                }
+                cells[cellsCount * 2] = cellStart;
+                cells[cellsCount * 2 + 1] = cellEnd;
+                cellsCount++;
+                state = STATE_CELL_START;
+                if (current == LF) {
+                    if (!visitRow(visitor, row, buffer, cells, cellsCount)) {
+                        return;
+                    }
+                    cellsCount = 0;
+                    rowStart = position + 1;
                 }
-                row.append(current);
             }
         }
-        if (row.length() > 0) {
-            table.add(parseRow(row.toString(), separator));
+        if (state != STATE_CELL_START || cellsCount > 0) {
+            if (state == STATE_CELL_START) {
+                cellStart = length;
+                cellEnd = length;
+            }
+            if (cellsCount * 2 == cells.length) {
+                cells = Arrays.copyOf(cells, cells.length * 2);
+            }
+            cells[cellsCount * 2] = cellStart;
+            cells[cellsCount * 2 + 1] = cellEnd;
+            visitRow(visitor, row, buffer, cells, cellsCount + 1);
         }
-        return table;
     }
 
-    @NonNull
-    private static StringRow parseRow(@NonNull String rowString, char separator) {
-        StringRow row = new StringRow();
-        StringBuilder cell = new StringBuilder();
-        boolean inQuotes = false;
-        boolean inElementQuotes = false;
-        int length = rowString.length();
-        for (int i = 0; i < length; i++) {
-            char current = rowString.charAt(i);
-            if (current == separator && !inElementQuotes) {
-                row.add(cell.toString());
-                cell.delete(0, cell.length());
-            } else if (current == CsvParser.QUOTE) {
-                int n = i + 1;
-                int p = i - 1;
-                if ((p > -1 && rowString.charAt(p) == separator || i == 0) && !inElementQuotes) {
-                    inElementQuotes = true;
-                } else if ((n < length && rowString.charAt(n) == separator || n == length) &&
-                        inElementQuotes) {
-                    inElementQuotes = false;
-                } else if (n < length && rowString.charAt(n) == CsvParser.QUOTE) {
-                    cell.append(current);
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else {
-                cell.append(current);
+    private static boolean visitRow(@NonNull RowVisitor visitor, @NonNull CsvRow row,
+            @NonNull char[] buffer, @NonNull int[] cells, int cellsCount) {
+        row.clear();
+        for (int i = 0; i < cellsCount; i++) {
+            row.addCell(buffer, cells[i * 2], cells[i * 2 + 1]);
+        }
+        return visitor.visit(row);
+    }
+
+    private static void encode(@NonNull StringTable table, @NonNull CsvWriter writer) throws
+            IOException {
+        for (StringRow row : table) {
+            for (String cell : row) {
+                writer.cell(cell);
             }
+            writer.endRow();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Visitor of parsed rows
+     */
+    public interface RowVisitor {
+        /**
+         * Called for each row, row and its cells are valid only during the call
+         *
+         * @param row Row
+         * @return true to continue parsing, false to stop
+         */
+        boolean visit(@NonNull CsvRow row);
+    }
+
+    private static final class TableBuilder implements RowVisitor {
+        private final StringTable mTable = new StringTable();
+
+        @Override
+        public boolean visit(@NonNull CsvRow row) {
+            StringRow stringRow = new StringRow();
+            for (int i = 0, s = row.size(); i < s; i++) {
+                stringRow.add(row.getString(i));
+            }
+            mTable.add(stringRow);
+            return true;
         }
-        row.add(cell.toString());
-        return row;
     }
 }
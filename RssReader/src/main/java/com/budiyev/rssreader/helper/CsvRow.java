@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.helper;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Row of CSV data, passed to {@link CsvParser.RowVisitor}
+ * <br>
+ * Row and its cells are reused for the following rows, they are valid only during
+ * {@link CsvParser.RowVisitor#visit(CsvRow)} call, use {@link #getString(int)} to keep a cell
+ */
+public final class CsvRow {
+    private final List<Cell> mCells = new ArrayList<>();
+    private int mSize;
+
+    CsvRow() {
+    }
+
+    /**
+     * Number of cells
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Cell, valid only while the row is visited
+     *
+     * @param index Column position in row
+     * @return Cell at index
+     */
+    @NonNull
+    public CharSequence cell(int index) {
+        checkIndex(index);
+        return mCells.get(index);
+    }
+
+    /**
+     * Copy of the cell
+     *
+     * @param index Column position in row
+     * @return Cell at index
+     */
+    @NonNull
+    public String getString(int index) {
+        checkIndex(index);
+        return mCells.get(index).toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("CsvRow [");
+        for (int i = 0; i < mSize; i++) {
+            if (i != 0) {
+                builder.append(", ");
+            }
+            builder.append(mCells.get(i));
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Add cell that refers to the specified range of characters, characters aren't copied
+     */
+    void addCell(@NonNull char[] chars, int start, int end) {
+        Cell cell;
+        if (mSize == mCells.size()) {
+            cell = new Cell();
+            mCells.add(cell);
+        } else {
+            cell = mCells.get(mSize);
+        }
+        cell.set(chars, start, end);
+        mSize++;
+    }
+
+    void clear() {
+        mSize = 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+        }
+    }
+
+    private static final class Cell implements CharSequence {
+        private char[] mChars;
+        private int mStart;
+        private int mEnd;
+
+        private void set(@NonNull char[] chars, int start, int end) {
+            mChars = chars;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        public int length() {
+            return mEnd - mStart;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mEnd - mStart) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return mChars[mStart + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end < start || end > mEnd - mStart) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new String(mChars, mStart + start, end - start);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return new String(mChars, mStart, mEnd - mStart);
+        }
+    }
+}
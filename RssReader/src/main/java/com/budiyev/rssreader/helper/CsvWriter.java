@@ -0,0 +1,350 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.helper;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer of CSV format, cells are written as soon as they are added,
+ * format is readable by {@link CsvParser}
+ * <br>
+ * Cells are quoted only if they contain quotes, separators or line breaks.
+ * Writer of {@code UTF-8} copies each cell into a reusable char array, escapes it there
+ * if needed and encodes it straight into a reusable byte buffer, nothing is allocated per cell.
+ */
+public final class CsvWriter implements Closeable, Flushable {
+    private static final String NULL_STRING = "null";
+    private static final char QUOTE = '\"';
+    private static final char LF = '\n';
+    private static final char CR = '\r';
+    private static final int BUFFER_SIZE = 8192;
+    private final Appendable mOutput;
+    private final WritableByteChannel mChannel;
+    private final Flushable mFlushable;
+    private final CharsetEncoder mEncoder;
+    private final ByteBuffer mBuffer;
+    private final char mSeparator;
+    private char[] mChars;
+    private CharBuffer mCharBuffer;
+    private boolean mRowStarted;
+
+    /**
+     * @param output    Output, {@link #flush()} and {@link #close()} are passed to it
+     *                  if it supports them
+     * @param separator Column separator
+     */
+    public CsvWriter(@NonNull Appendable output, char separator) {
+        mOutput = output;
+        mChannel = null;
+        mFlushable = output instanceof Flushable ? (Flushable) output : null;
+        mEncoder = null;
+        mBuffer = null;
+        mSeparator = separator;
+    }
+
+    /**
+     * Writer of {@code UTF-8}
+     *
+     * @param channel   Channel to save result, for example {@link java.nio.channels.FileChannel},
+     *                  it is closed by {@link #close()}
+     * @param separator Column separator
+     */
+    public CsvWriter(@NonNull WritableByteChannel channel, char separator) {
+        this(channel, null, separator);
+    }
+
+    /**
+     * @param outputStream Stream to save result
+     * @param separator    Column separator
+     * @param charset      Charset name
+     */
+    public CsvWriter(@NonNull OutputStream outputStream, char separator, @NonNull String charset)
+            throws IOException {
+        if (StandardCharsets.UTF_8.name().equalsIgnoreCase(charset)) {
+            mOutput = null;
+            mChannel = Channels.newChannel(outputStream);
+            mFlushable = outputStream;
+            mEncoder = newEncoder();
+            mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        } else {
+            BufferedWriter writer =
+                    new BufferedWriter(new OutputStreamWriter(outputStream, charset));
+            mOutput = writer;
+            mChannel = null;
+            mFlushable = writer;
+            mEncoder = null;
+            mBuffer = null;
+        }
+        mSeparator = separator;
+    }
+
+    private CsvWriter(@NonNull WritableByteChannel channel, @Nullable Flushable flushable,
+            char separator) {
+        mOutput = null;
+        mChannel = channel;
+        mFlushable = flushable;
+        mEncoder = newEncoder();
+        mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        mSeparator = separator;
+    }
+
+    /**
+     * Write cell of the current row
+     *
+     * @param cell Cell value, {@code null} is written as {@code "null"}
+     * @return This writer
+     */
+    @NonNull
+    public CsvWriter cell(@Nullable CharSequence cell) throws IOException {
+        if (cell == null) {
+            cell = NULL_STRING;
+        }
+        if (mRowStarted) {
+            writeChar(mSeparator);
+        }
+        mRowStarted = true;
+        if (mBuffer == null) {
+            appendCell(cell);
+        } else {
+            encodeCell(cell);
+        }
+        return this;
+    }
+
+    /**
+     * Write cell of the current row
+     *
+     * @param cell Cell value
+     * @return This writer
+     */
+    @NonNull
+    public CsvWriter cell(long cell) throws IOException {
+        return cell(String.valueOf(cell));
+    }
+
+    /**
+     * Finish the current row
+     *
+     * @return This writer
+     */
+    @NonNull
+    public CsvWriter endRow() throws IOException {
+        writeChar(LF);
+        mRowStarted = false;
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (mBuffer != null) {
+            writeBuffer();
+        }
+        if (mFlushable != null) {
+            mFlushable.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (mChannel != null) {
+                mChannel.close();
+            } else if (mOutput instanceof Closeable) {
+                ((Closeable) mOutput).close();
+            }
+        }
+    }
+
+    private void appendCell(@NonNull CharSequence cell) throws IOException {
+        Appendable output = mOutput;
+        if (!needsQuotes(cell)) {
+            output.append(cell);
+            return;
+        }
+        output.append(QUOTE);
+        for (int i = 0, l = cell.length(); i < l; i++) {
+            char c = cell.charAt(i);
+            if (c == QUOTE) {
+                output.append(QUOTE);
+            }
+            output.append(c);
+        }
+        output.append(QUOTE);
+    }
+
+    private void encodeCell(@NonNull CharSequence cell) throws IOException {
+        int length = cell.length();
+        // Space for the opening quote is reserved
+        char[] chars = copyChars(cell, length, 1);
+        int quotes = countSpecialChars(chars, 1, length + 1);
+        if (quotes < 0) {
+            encode(1, length + 1);
+            return;
+        }
+        // Quoted and escaped cell is assembled in place
+        int escapedLength = length + quotes + 2;
+        chars[0] = QUOTE;
+        for (int from = length, to = escapedLength - 1; from > 0; from--) {
+            char c = chars[from];
+            chars[--to] = c;
+            if (c == QUOTE) {
+                chars[--to] = QUOTE;
+            }
+        }
+        chars[escapedLength - 1] = QUOTE;
+        encode(0, escapedLength);
+    }
+
+    private boolean needsQuotes(@NonNull CharSequence cell) {
+        char separator = mSeparator;
+        for (int i = 0, l = cell.length(); i < l; i++) {
+            char c = cell.charAt(i);
+            if (c == QUOTE || c == separator || c == LF || c == CR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of quotes in the range if it should be quoted or {@code -1} otherwise
+     */
+    private int countSpecialChars(@NonNull char[] chars, int start, int end) {
+        char separator = mSeparator;
+        int quotes = 0;
+        boolean special = false;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == QUOTE) {
+                quotes++;
+                special = true;
+            } else if (c == separator || c == LF || c == CR) {
+                special = true;
+            }
+        }
+        return special ? quotes : -1;
+    }
+
+    /**
+     * Copy characters of the cell into the reusable array, reserving space for escaping
+     *
+     * @param offset Position of the first character in the array
+     */
+    @NonNull
+    private char[] copyChars(@NonNull CharSequence cell, int length, int offset) {
+        // Enough for the worst case of escaping
+        char[] chars = getChars(length * 2 + 2);
+        if (cell instanceof String) {
+            ((String) cell).getChars(0, length, chars, offset);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[offset + i] = cell.charAt(i);
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Reusable array of at least the specified capacity
+     */
+    @NonNull
+    private char[] getChars(int capacity) {
+        char[] chars = mChars;
+        if (chars == null || chars.length < capacity) {
+            chars = new char[Math.max(capacity, BUFFER_SIZE)];
+            mChars = chars;
+            mCharBuffer = CharBuffer.wrap(chars);
+        }
+        return chars;
+    }
+
+    /**
+     * Encode range of the reusable array, unpaired surrogates are replaced
+     */
+    private void encode(int start, int end) throws IOException {
+        CharBuffer input = mCharBuffer;
+        input.limit(end);
+        input.position(start);
+        CharsetEncoder encoder = mEncoder;
+        encoder.reset();
+        for (; ; ) {
+            CoderResult result = encoder.encode(input, mBuffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(mBuffer).isOverflow()) {
+            writeBuffer();
+        }
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (mBuffer == null) {
+            mOutput.append(c);
+        } else if (c < 0x80) {
+            if (!mBuffer.hasRemaining()) {
+                writeBuffer();
+            }
+            mBuffer.put((byte) c);
+        } else {
+            getChars(1)[0] = c;
+            encode(0, 1);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        ByteBuffer buffer = mBuffer;
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @NonNull
+    private static CharsetEncoder newEncoder() {
+        return StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.helper;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public final class EncodingHelper {
+    /**
+     * Value of the {@code Accept-Encoding} request header for content encodings
+     * supported by {@link #decodeContent(InputStream, String)}
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_X_GZIP = "x-gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String CHARSET_PARAMETER = "charset=";
+    private static final String CHARSET_UTF_8 = "UTF-8";
+    private static final String CHARSET_UTF_16BE = "UTF-16BE";
+    private static final String CHARSET_UTF_16LE = "UTF-16LE";
+    private static final String PROLOG_START = "<?xml";
+    private static final String PROLOG_END = "?>";
+    private static final String PROLOG_ENCODING = "encoding";
+    private static final int SNIFF_LIMIT = 512;
+
+    private EncodingHelper() {
+    }
+
+    /**
+     * Wrap response stream into decoder of specified content encoding
+     *
+     * @param inputStream     Response stream
+     * @param contentEncoding Value of the {@code Content-Encoding} response header
+     * @return Stream of decoded content
+     */
+    @NonNull
+    public static InputStream decodeContent(@NonNull InputStream inputStream,
+            @Nullable String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return inputStream;
+        }
+        contentEncoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (ENCODING_GZIP.equals(contentEncoding) || ENCODING_X_GZIP.equals(contentEncoding)) {
+            return new GZIPInputStream(inputStream);
+        } else if (ENCODING_DEFLATE.equals(contentEncoding)) {
+            // "deflate" is supposed to be zlib-wrapped, but some servers send raw deflate data
+            BufferedInputStream bufferedStream = new BufferedInputStream(inputStream);
+            bufferedStream.mark(2);
+            int first = bufferedStream.read();
+            int second = bufferedStream.read();
+            bufferedStream.reset();
+            boolean wrapped = first != -1 && second != -1 && (first & 0x0f) == 8 &&
+                    ((first << 8) | second) % 31 == 0;
+            return new InflaterInputStream(bufferedStream, new Inflater(!wrapped));
+        } else {
+            return inputStream;
+        }
+    }
+
+    /**
+     * Charset from the {@code charset} parameter of {@code Content-Type} header
+     *
+     * @param contentType Value of the {@code Content-Type} response header
+     * @return Supported charset name or {@code null} if it isn't specified or not supported
+     */
+    @Nullable
+    public static String getContentTypeCharset(@Nullable String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            parameter = parameter.trim();
+            if (parameter.regionMatches(true, 0, CHARSET_PARAMETER, 0,
+                    CHARSET_PARAMETER.length())) {
+                return validateCharset(
+                        unquote(parameter.substring(CHARSET_PARAMETER.length()).trim()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Detect charset of XML document: from the {@code Content-Type} header, then from
+     * the XML prolog, then from the byte order mark, {@code UTF-8} otherwise.
+     * Byte order mark, if any, is skipped from the stream.
+     *
+     * @param inputStream Document stream, should support {@link InputStream#mark(int)}
+     * @param contentType Value of the {@code Content-Type} response header
+     * @return Charset name
+     */
+    @NonNull
+    public static String detectXmlCharset(@NonNull BufferedInputStream inputStream,
+            @Nullable String contentType) throws IOException {
+        byte[] head = new byte[SNIFF_LIMIT];
+        inputStream.mark(SNIFF_LIMIT);
+        int length = 0;
+        for (int read; length < SNIFF_LIMIT; length += read) {
+            read = inputStream.read(head, length, SNIFF_LIMIT - length);
+            if (read == -1) {
+                break;
+            }
+        }
+        inputStream.reset();
+        int bomLength = 0;
+        String bomCharset = null;
+        if (startsWith(head, length, 0xef, 0xbb, 0xbf)) {
+            bomLength = 3;
+            bomCharset = CHARSET_UTF_8;
+        } else if (startsWith(head, length, 0xfe, 0xff)) {
+            bomLength = 2;
+            bomCharset = CHARSET_UTF_16BE;
+        } else if (startsWith(head, length, 0xff, 0xfe)) {
+            bomLength = 2;
+            bomCharset = CHARSET_UTF_16LE;
+        } else if (startsWith(head, length, 0x00, 0x3c, 0x00, 0x3f)) {
+            bomCharset = CHARSET_UTF_16BE;
+        } else if (startsWith(head, length, 0x3c, 0x00, 0x3f, 0x00)) {
+            bomCharset = CHARSET_UTF_16LE;
+        }
+        for (long skipped = 0; skipped < bomLength; ) {
+            skipped += inputStream.skip(bomLength - skipped);
+        }
+        String charset = getContentTypeCharset(contentType);
+        if (charset == null) {
+            charset = getPrologCharset(head, bomLength, length);
+        }
+        if (charset == null) {
+            charset = bomCharset;
+        }
+        if (charset == null) {
+            charset = CHARSET_UTF_8;
+        }
+        return charset;
+    }
+
+    @Nullable
+    private static String getPrologCharset(@NonNull byte[] head, int offset, int length) {
+        // Prolog of ASCII-compatible encodings, characters outside of ASCII aren't allowed there
+        StringBuilder prolog = new StringBuilder();
+        for (int i = offset; i < length; i++) {
+            int b = head[i] & 0xff;
+            if (b == 0 || b > 0x7f) {
+                break;
+            }
+            prolog.append((char) b);
+        }
+        if (prolog.indexOf(PROLOG_START) != 0) {
+            return null;
+        }
+        int end = prolog.indexOf(PROLOG_END);
+        if (end == -1) {
+            return null;
+        }
+        int position = prolog.indexOf(PROLOG_ENCODING);
+        if (position == -1 || position > end) {
+            return null;
+        }
+        position = prolog.indexOf("=", position);
+        if (position == -1 || position > end) {
+            return null;
+        }
+        position++;
+        while (position < end && Character.isWhitespace(prolog.charAt(position))) {
+            position++;
+        }
+        if (position == end) {
+            return null;
+        }
+        char quote = prolog.charAt(position);
+        if (quote != '"' && quote != '\'') {
+            return null;
+        }
+        int valueEnd = prolog.indexOf(String.valueOf(quote), position + 1);
+        if (valueEnd == -1 || valueEnd > end) {
+            return null;
+        }
+        return validateCharset(prolog.substring(position + 1, valueEnd).trim());
+    }
+
+    @Nullable
+    private static String validateCharset(@NonNull String charset) {
+        try {
+            if (!charset.isEmpty() && Charset.isSupported(charset)) {
+                return charset;
+            }
+        } catch (IllegalCharsetNameException ignored) {
+        }
+        return null;
+    }
+
+    @NonNull
+    private static String unquote(@NonNull String value) {
+        int length = value.length();
+        if (length > 1 && value.charAt(0) == '"' && value.charAt(length - 1) == '"') {
+            return value.substring(1, length - 1);
+        } else {
+            return value;
+        }
+    }
+
+    private static boolean startsWith(@NonNull byte[] data, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((data[i] & 0xff) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
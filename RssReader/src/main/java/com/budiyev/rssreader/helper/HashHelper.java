@@ -30,9 +30,25 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public final class HashHelper {
+    private static final long FNV64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
     private HashHelper() {
     }
 
+    /**
+     * 64-bit FNV-1a hash of characters, fast non-cryptographic hash
+     */
+    public static long generateFNV64(@NonNull CharSequence string) {
+        long hash = FNV64_OFFSET_BASIS;
+        for (int i = 0, l = string.length(); i < l; i++) {
+            char c = string.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV64_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV64_PRIME;
+        }
+        return hash;
+    }
+
     @NonNull
     public static String generateSHA256(@NonNull String string) {
         try {
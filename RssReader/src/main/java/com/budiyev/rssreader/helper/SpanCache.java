@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.helper;
+
+import android.support.annotation.NonNull;
+import android.text.Spanned;
+import android.util.LruCache;
+
+/**
+ * Bounded cache of parsed HTML, shared by all feeds
+ * <br>
+ * Entries are keyed by 64-bit hash of the source HTML and weighted by approximate
+ * size of the source and of the spanned text, least recently used entries are evicted first.
+ * Source is compared on hit, so hash collisions are handled as misses.
+ */
+public final class SpanCache {
+    /**
+     * Approximate maximum size of cached spans and their sources, in bytes
+     */
+    public static final int MAX_SIZE = 2 * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int SPAN_OVERHEAD = 48;
+    private static final Cache CACHE = new Cache(MAX_SIZE);
+
+    private SpanCache() {
+    }
+
+    /**
+     * Parse HTML or take result of the previous parse of the same HTML
+     *
+     * @param html HTML string
+     * @return Spanned text
+     * @see TextHelper#parseHtml(String)
+     */
+    @NonNull
+    public static Spanned parseHtml(@NonNull String html) {
+        Long key = HashHelper.generateFNV64(html);
+        Entry entry = CACHE.get(key);
+        if (entry != null && entry.mSource.equals(html)) {
+            return entry.mSpanned;
+        }
+        Spanned spanned = TextHelper.parseHtml(html);
+        CACHE.put(key, new Entry(html, spanned));
+        return spanned;
+    }
+
+    public static int getHitCount() {
+        return CACHE.hitCount();
+    }
+
+    public static int getMissCount() {
+        return CACHE.missCount();
+    }
+
+    public static int getEvictionCount() {
+        return CACHE.evictionCount();
+    }
+
+    /**
+     * Approximate size of cached spans and their sources, in bytes
+     */
+    public static int getSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * Evict entries until size of the cache is not greater than specified
+     *
+     * @param size Size in bytes
+     */
+    public static void trimToSize(int size) {
+        CACHE.trimToSize(size);
+    }
+
+    private static final class Entry {
+        private final String mSource;
+        private final Spanned mSpanned;
+        private final int mSize;
+
+        private Entry(@NonNull String source, @NonNull Spanned spanned) {
+            mSource = source;
+            mSpanned = spanned;
+            // Source is counted too, cache may be the only one that keeps it
+            mSize = ENTRY_OVERHEAD + source.length() * 2 + spanned.length() * 2 +
+                    spanned.getSpans(0, spanned.length(), Object.class).length * SPAN_OVERHEAD;
+        }
+    }
+
+    private static final class Cache extends LruCache<Long, Entry> {
+        private Cache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(Long key, Entry value) {
+            return value.mSize;
+        }
+    }
+}
@@ -41,9 +41,22 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public final class ThreadHelper {
+    /**
+     * Number of fetch threads, see {@link #runOnFetchThread(Runnable)}
+     */
+    public static final int FETCH_THREADS_COUNT = 4;
     private static final Lock WORKER_THREAD_EXECUTOR_LOCK = new ReentrantLock();
+    private static final Lock COMPUTATION_THREAD_EXECUTOR_LOCK = new ReentrantLock();
+    private static final Lock FETCH_THREAD_EXECUTOR_LOCK = new ReentrantLock();
     private static final Lock MAIN_THREAD_HANDLER_LOCK = new ReentrantLock();
+    private static final String WORKER_THREAD_NAME_PREFIX = "Simply RSS worker thread #";
+    private static final String COMPUTATION_THREAD_NAME_PREFIX =
+            "Simply RSS computation thread #";
+    private static final String FETCH_THREAD_NAME_PREFIX = "Simply RSS fetch thread #";
+    private static final long FETCH_THREAD_KEEP_ALIVE_TIME = 30L;
     private static volatile ExecutorService sWorkerThreadExecutor;
+    private static volatile ExecutorService sComputationThreadExecutor;
+    private static volatile ExecutorService sFetchThreadExecutor;
     private static volatile Handler sMainThreadHandler;
 
     private ThreadHelper() {
@@ -54,6 +67,29 @@ public final class ThreadHelper {
         getWorkerThreadExecutor().submit(action);
     }
 
+    /**
+     * Run CPU-bound action, number of computation threads is equal to the number
+     * of processors, see {@link #getComputationThreadsCount()}
+     */
+    @AnyThread
+    public static void runOnComputationThread(@NonNull Runnable action) {
+        getComputationThreadExecutor().submit(action);
+    }
+
+    /**
+     * Run bulk network action, such as one of many fetches of a refresh, so that
+     * it doesn't occupy worker threads, at most {@link #FETCH_THREADS_COUNT} actions
+     * run at the same time, threads are stopped when idle
+     */
+    @AnyThread
+    public static void runOnFetchThread(@NonNull Runnable action) {
+        getFetchThreadExecutor().submit(action);
+    }
+
+    public static int getComputationThreadsCount() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     @AnyThread
     public static void runOnMainThread(@NonNull Runnable action) {
         getMainThreadHandler().post(action);
@@ -74,7 +110,8 @@ public final class ThreadHelper {
                         threads = Math.round(threads * 1.5f);
                     }
                     executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.NANOSECONDS,
-                            new LinkedBlockingQueue<Runnable>(), new AppThreadFactory()) {
+                            new LinkedBlockingQueue<Runnable>(),
+                            new AppThreadFactory(WORKER_THREAD_NAME_PREFIX)) {
                         @Override
                         protected void afterExecute(Runnable r, Throwable t) {
                             ThreadHelper.throwExecutionExceptionIfNeeded(r, t);
@@ -89,6 +126,61 @@ public final class ThreadHelper {
         return executor;
     }
 
+    @NonNull
+    private static ExecutorService getComputationThreadExecutor() {
+        ExecutorService executor = sComputationThreadExecutor;
+        if (executor == null) {
+            COMPUTATION_THREAD_EXECUTOR_LOCK.lock();
+            try {
+                executor = sComputationThreadExecutor;
+                if (executor == null) {
+                    int threads = getComputationThreadsCount();
+                    executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.NANOSECONDS,
+                            new LinkedBlockingQueue<Runnable>(),
+                            new AppThreadFactory(COMPUTATION_THREAD_NAME_PREFIX)) {
+                        @Override
+                        protected void afterExecute(Runnable r, Throwable t) {
+                            ThreadHelper.throwExecutionExceptionIfNeeded(r, t);
+                        }
+                    };
+                    sComputationThreadExecutor = executor;
+                }
+            } finally {
+                COMPUTATION_THREAD_EXECUTOR_LOCK.unlock();
+            }
+        }
+        return executor;
+    }
+
+    @NonNull
+    private static ExecutorService getFetchThreadExecutor() {
+        ExecutorService executor = sFetchThreadExecutor;
+        if (executor == null) {
+            FETCH_THREAD_EXECUTOR_LOCK.lock();
+            try {
+                executor = sFetchThreadExecutor;
+                if (executor == null) {
+                    ThreadPoolExecutor fetchExecutor =
+                            new ThreadPoolExecutor(FETCH_THREADS_COUNT, FETCH_THREADS_COUNT,
+                                    FETCH_THREAD_KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<Runnable>(),
+                                    new AppThreadFactory(FETCH_THREAD_NAME_PREFIX)) {
+                                @Override
+                                protected void afterExecute(Runnable r, Throwable t) {
+                                    ThreadHelper.throwExecutionExceptionIfNeeded(r, t);
+                                }
+                            };
+                    fetchExecutor.allowCoreThreadTimeOut(true);
+                    executor = fetchExecutor;
+                    sFetchThreadExecutor = executor;
+                }
+            } finally {
+                FETCH_THREAD_EXECUTOR_LOCK.unlock();
+            }
+        }
+        return executor;
+    }
+
     @NonNull
     private static Handler getMainThreadHandler() {
         Handler handler = sMainThreadHandler;
@@ -119,13 +211,17 @@ public final class ThreadHelper {
     }
 
     private static final class AppThreadFactory implements ThreadFactory {
-        private static final AtomicInteger COUNTER = new AtomicInteger();
-        private static final String NAME_PREFIX = "Simply RSS worker thread #";
+        private final AtomicInteger mCounter = new AtomicInteger();
+        private final String mNamePrefix;
+
+        private AppThreadFactory(@NonNull String namePrefix) {
+            mNamePrefix = namePrefix;
+        }
 
         @Override
         public Thread newThread(@NonNull Runnable runnable) {
-            COUNTER.compareAndSet(Integer.MAX_VALUE, 0);
-            Thread thread = new Thread(runnable, NAME_PREFIX + COUNTER.incrementAndGet());
+            mCounter.compareAndSet(Integer.MAX_VALUE, 0);
+            Thread thread = new Thread(runnable, mNamePrefix + mCounter.incrementAndGet());
             if (thread.getPriority() != Thread.MIN_PRIORITY) {
                 thread.setPriority(Thread.MIN_PRIORITY);
             }
@@ -26,6 +26,10 @@ package com.budiyev.rssreader.helper;
 import android.support.annotation.NonNull;
 import android.util.Patterns;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+
 public final class UrlHelper {
     private UrlHelper() {
     }
@@ -42,4 +46,55 @@ public final class UrlHelper {
             return url;
         }
     }
+
+    /**
+     * Normalize URL-address to compare addresses of the same resource: scheme and host
+     * are converted to lower case, default port and fragment are removed
+     *
+     * @param url URL-address
+     * @return Normalized URL-address
+     */
+    @NonNull
+    public static String normalize(@NonNull String url) {
+        url = validateScheme(url.trim());
+        try {
+            URL parsed = new URL(url);
+            String protocol = parsed.getProtocol().toLowerCase(Locale.ROOT);
+            StringBuilder builder = new StringBuilder(url.length()).append(protocol).append("://");
+            String userInfo = parsed.getUserInfo();
+            if (userInfo != null) {
+                builder.append(userInfo).append('@');
+            }
+            builder.append(parsed.getHost().toLowerCase(Locale.ROOT));
+            int port = parsed.getPort();
+            if (port != -1 && port != parsed.getDefaultPort()) {
+                builder.append(':').append(port);
+            }
+            String file = parsed.getFile();
+            if (file.isEmpty()) {
+                builder.append('/');
+            } else {
+                builder.append(file);
+            }
+            return builder.toString();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Host of specified URL-address, in lower case
+     *
+     * @param url URL-address
+     * @return Host or empty string if address is malformed
+     */
+    @NonNull
+    public static String getHost(@NonNull String url) {
+        try {
+            String host = new URL(validateScheme(url)).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
 }
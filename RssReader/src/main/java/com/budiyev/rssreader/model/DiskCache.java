@@ -0,0 +1,326 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.support.annotation.NonNull;
+
+import com.budiyev.rssreader.helper.CsvParser;
+import com.budiyev.rssreader.helper.CsvRow;
+import com.budiyev.rssreader.helper.CsvWriter;
+import com.budiyev.rssreader.model.data.DiskCacheStats;
+import com.budiyev.rssreader.model.preferences.Constants;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of feed histories on disk, see {@link FeedHistory}, with LRU eviction under
+ * size budget
+ * <br>
+ * Index keeps size and last access time of each history, it is saved into the cache directory
+ * on trim. Histories that are missing in the index (if it is lost) are indexed
+ * by modification time.
+ */
+final class DiskCache {
+    /**
+     * Orphans are kept for a while, deletion of a feed can be undone
+     * and widget could be reconfigured
+     */
+    static final long ORPHAN_TIMEOUT = TimeUnit.DAYS.toMillis(1);
+    private static final String INDEX_FILE_NAME = "cache_index";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int COLUMN_NAME = 0;
+    private static final int COLUMN_SIZE = 1;
+    private static final int COLUMN_ACCESS_TIME = 2;
+    private static final int COLUMNS_COUNT = 3;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final File mDirectory;
+    private final String mPrefix;
+    private long mMaxSize;
+    private long mSize;
+    private long mEvictionCount;
+    private long mOrphanCount;
+    private long mTrimTime;
+
+    /**
+     * Reads the index and the directory, should be created on a worker thread
+     *
+     * @param directory Cache directory
+     * @param prefix    Prefix of names of the histories in the directory
+     * @param maxSize   Size budget in bytes
+     */
+    DiskCache(@NonNull File directory, @NonNull String prefix, long maxSize) {
+        mDirectory = directory;
+        mPrefix = prefix;
+        mMaxSize = maxSize;
+        Map<String, Entry> index = readIndex();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(files.length);
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(prefix) || name.endsWith(TEMP_FILE_SUFFIX)) {
+                continue;
+            }
+            Entry entry = index.get(name);
+            if (entry == null) {
+                entry = new Entry(name, 0, file.lastModified());
+            }
+            entry.mSize = getSize(file);
+            entries.add(entry);
+        }
+        sortByAccessTime(entries);
+        for (Entry entry : entries) {
+            mEntries.put(entry.mName, entry);
+            mSize += entry.mSize;
+        }
+    }
+
+    @NonNull
+    File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Mark the history as recently used, when its feed is read from memory or disk,
+     * or saved without changes
+     */
+    synchronized void onAccess(@NonNull String name) {
+        Entry entry = mEntries.get(name);
+        if (entry != null) {
+            entry.mAccessTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Update size of the history after it was written
+     */
+    synchronized void onWrite(@NonNull String name) {
+        Entry entry = mEntries.get(name);
+        if (entry == null) {
+            entry = new Entry(name, 0, 0);
+            mEntries.put(name, entry);
+        }
+        long size = getSize(new File(mDirectory, name));
+        mSize += size - entry.mSize;
+        entry.mSize = size;
+        entry.mAccessTime = System.currentTimeMillis();
+    }
+
+    synchronized boolean isOverBudget() {
+        return mSize > mMaxSize;
+    }
+
+    synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    synchronized long getTrimTime() {
+        return mTrimTime;
+    }
+
+    /**
+     * Select orphans that weren't accessed for {@link #ORPHAN_TIMEOUT} and least recently used
+     * histories while size of the cache is greater than the budget
+     * <br>
+     * Index isn't changed, each selected history should be removed with
+     * {@link #remove(String, Set)} under the lock of its feed, then {@link #saveIndex()}
+     * should be called
+     *
+     * @param usedNames Names of histories of the feeds that are subscribed or shown in widgets
+     * @return Names of the histories to remove, in order
+     */
+    @NonNull
+    synchronized List<String> trim(@NonNull Set<String> usedNames) {
+        long time = System.currentTimeMillis();
+        mTrimTime = time;
+        List<String> selected = new ArrayList<>();
+        long size = mSize;
+        for (Entry entry : mEntries.values()) {
+            if (isOrphan(entry, usedNames, time)) {
+                size -= entry.mSize;
+                selected.add(entry.mName);
+            }
+        }
+        for (Iterator<Entry> i = mEntries.values().iterator(); i.hasNext() && size > mMaxSize; ) {
+            Entry entry = i.next();
+            if (!isOrphan(entry, usedNames, time)) {
+                size -= entry.mSize;
+                selected.add(entry.mName);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Remove the history selected by {@link #trim(Set)} from the index if it still should be
+     * removed: it's still an orphan, or it's still the least recently used history
+     * while the cache is over budget
+     *
+     * @param name      Name of the history
+     * @param usedNames Names of histories of the feeds that are subscribed or shown in widgets
+     * @return {@code true} if the history is removed from the index, caller should delete it
+     * before releasing the lock of its feed, {@code false} if it was accessed or written since
+     * it was selected
+     */
+    synchronized boolean remove(@NonNull String name, @NonNull Set<String> usedNames) {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        // Peek without get(), it would move the entry to the end of the access order
+        Entry eldest = iterator.next();
+        boolean evicted = mSize > mMaxSize && eldest.mName.equals(name);
+        Entry entry = evicted ? eldest : mEntries.get(name);
+        if (entry == null) {
+            return false;
+        }
+        if (isOrphan(entry, usedNames, System.currentTimeMillis())) {
+            mOrphanCount++;
+        } else if (evicted) {
+            mEvictionCount++;
+        } else {
+            return false;
+        }
+        mEntries.remove(name);
+        mSize -= entry.mSize;
+        return true;
+    }
+
+    synchronized void saveIndex() {
+        writeIndex();
+    }
+
+    @NonNull
+    synchronized DiskCacheStats getStats() {
+        return new DiskCacheStats(mEntries.size(), mSize, mMaxSize, mEvictionCount, mOrphanCount,
+                mTrimTime);
+    }
+
+    @NonNull
+    private Map<String, Entry> readIndex() {
+        final Map<String, Entry> index = new HashMap<>();
+        File indexFile = new File(mDirectory, INDEX_FILE_NAME);
+        if (!indexFile.exists()) {
+            return index;
+        }
+        try (InputStream inputStream = new FileInputStream(indexFile)) {
+            CsvParser.parse(inputStream, Constants.CSV_SEPARATOR, Constants.CSV_CHARSET,
+                    new CsvParser.RowVisitor() {
+                        @Override
+                        public boolean visit(@NonNull CsvRow row) {
+                            if (row.size() != COLUMNS_COUNT) {
+                                return true;
+                            }
+                            try {
+                                String name = row.getString(COLUMN_NAME);
+                                index.put(name, new Entry(name,
+                                        Long.parseLong(row.getString(COLUMN_SIZE)),
+                                        Long.parseLong(row.getString(COLUMN_ACCESS_TIME))));
+                            } catch (NumberFormatException ignored) {
+                            }
+                            return true;
+                        }
+                    });
+        } catch (IOException ignored) {
+        }
+        return index;
+    }
+
+    private void writeIndex() {
+        File indexFile = new File(mDirectory, INDEX_FILE_NAME);
+        File tempFile = new File(mDirectory, INDEX_FILE_NAME + TEMP_FILE_SUFFIX);
+        boolean written;
+        try (CsvWriter writer = new CsvWriter(new FileOutputStream(tempFile).getChannel(),
+                Constants.CSV_SEPARATOR)) {
+            for (Entry entry : mEntries.values()) {
+                writer.cell(entry.mName).cell(entry.mSize).cell(entry.mAccessTime).endRow();
+            }
+            written = true;
+        } catch (IOException e) {
+            written = false;
+        }
+        if (!written || !tempFile.renameTo(indexFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    private static boolean isOrphan(@NonNull Entry entry, @NonNull Set<String> usedNames,
+            long time) {
+        return !usedNames.contains(entry.mName) && time - entry.mAccessTime > ORPHAN_TIMEOUT;
+    }
+
+    /**
+     * Size of the file or of the files of the directory, in bytes
+     */
+    private static long getSize(@NonNull File file) {
+        File[] files = file.listFiles();
+        if (files == null) {
+            return file.length();
+        }
+        long size = 0;
+        for (File child : files) {
+            size += child.length();
+        }
+        return size;
+    }
+
+    private static void sortByAccessTime(@NonNull List<Entry> entries) {
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.mAccessTime < b.mAccessTime ? -1 :
+                        a.mAccessTime == b.mAccessTime ? 0 : 1;
+            }
+        });
+    }
+
+    private static final class Entry {
+        private final String mName;
+        private long mSize;
+        private long mAccessTime;
+
+        private Entry(@NonNull String name, long size, long accessTime) {
+            mName = name;
+            mSize = size;
+            mAccessTime = accessTime;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.text.format.DateUtils;
+
+import com.budiyev.rssreader.helper.ConnectivityHelper;
+import com.budiyev.rssreader.helper.UrlHelper;
+import com.budiyev.rssreader.model.fetch.FetchRequest;
+import com.budiyev.rssreader.model.fetch.ResponseCodeException;
+import com.budiyev.rssreader.model.preferences.Constants;
+import com.budiyev.rssreader.model.preferences.FeedPreferences;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fetch failures of feeds and hosts
+ * <br>
+ * Failed feed is retried after jittered exponential backoff. Feed that responds {@code 404}
+ * or {@code 410} is retried after longer backoff and is considered gone (isn't fetched until
+ * it's reset) only after {@link #GONE_THRESHOLD} such responses in a row, spanning at least
+ * {@link #GONE_PERIOD}, so that a transient error of the server doesn't unsubscribe
+ * the feed forever. Host that failed
+ * {@link #HOST_FAILURE_THRESHOLD} times in a row is open-circuited: fetches of all its feeds
+ * are skipped until backoff expires, then a single probe fetch is allowed.
+ * <br>
+ * State is persistent to survive process restarts between widget alarms and is written
+ * only when it changes, pending probe fetches are kept in memory
+ */
+public final class FailureTracker {
+    /**
+     * Consecutive failures of a host after which its circuit is opened
+     */
+    public static final int HOST_FAILURE_THRESHOLD = 3;
+    /**
+     * Retry time of a feed that doesn't exist anymore
+     */
+    public static final long RETRY_NEVER = Long.MAX_VALUE;
+    /**
+     * Consecutive {@code 404} or {@code 410} responses after which feed is considered gone
+     */
+    public static final int GONE_THRESHOLD = 5;
+    /**
+     * Minimum time between the first and the last of consecutive {@code 404}
+     * or {@code 410} responses after which feed is considered gone
+     */
+    public static final long GONE_PERIOD = 7 * DateUtils.DAY_IN_MILLIS;
+    private static final long FEED_BACKOFF_BASE = DateUtils.MINUTE_IN_MILLIS;
+    private static final long FEED_BACKOFF_MAX = DateUtils.DAY_IN_MILLIS;
+    private static final long GONE_BACKOFF_BASE = DateUtils.HOUR_IN_MILLIS;
+    private static final long GONE_BACKOFF_MAX = 2 * DateUtils.DAY_IN_MILLIS;
+    private static final long HOST_BACKOFF_BASE = 5 * DateUtils.MINUTE_IN_MILLIS;
+    private static final long HOST_BACKOFF_MAX = 6 * DateUtils.HOUR_IN_MILLIS;
+    private static final int BACKOFF_MAX_SHIFT = 20;
+    private static final Object LOCK = new Object();
+    private static final Random RANDOM = new Random();
+    private static final Map<String, Long> HOST_PROBES = new HashMap<>();
+
+    private FailureTracker() {
+    }
+
+    /**
+     * Check whether if the feed can be fetched now
+     * <br>
+     * If circuit of the feed host is half-open, this call takes the only probe fetch,
+     * other fetches of the host are skipped until the probe is completed
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     * @return {@code true} if the feed should be fetched, {@code false} otherwise
+     */
+    public static boolean acquireFetch(@NonNull Context context, @NonNull String url) {
+        String key = UrlHelper.normalize(url);
+        String host = UrlHelper.getHost(url);
+        long time = System.currentTimeMillis();
+        synchronized (LOCK) {
+            if (FeedPreferences.getRetryTime(context, key) > time) {
+                return false;
+            }
+            int hostFailures = FeedPreferences.getHostFailureCount(context, host);
+            if (hostFailures < HOST_FAILURE_THRESHOLD) {
+                return true;
+            }
+            if (getHostRetryTime(context, host) > time) {
+                return false;
+            }
+            // Probe deadline doesn't need to survive the process
+            HOST_PROBES.put(host, time + FetchRequest.DEFAULT_DEADLINE);
+            return true;
+        }
+    }
+
+    /**
+     * Time when the feed can be fetched next time, considering state of its host
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     * @return Time in milliseconds since epoch, may be in the past,
+     * or {@link #RETRY_NEVER} if the feed doesn't exist anymore
+     */
+    public static long getRetryTime(@NonNull Context context, @NonNull String url) {
+        String key = UrlHelper.normalize(url);
+        String host = UrlHelper.getHost(url);
+        synchronized (LOCK) {
+            long retryTime = FeedPreferences.getRetryTime(context, key);
+            if (FeedPreferences.getHostFailureCount(context, host) >= HOST_FAILURE_THRESHOLD) {
+                retryTime = Math.max(retryTime, getHostRetryTime(context, host));
+            }
+            return retryTime;
+        }
+    }
+
+    /**
+     * Forget failures of the feed, when user subscribes to it again, for example
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     */
+    public static void reset(@NonNull Context context, @NonNull String url) {
+        String key = UrlHelper.normalize(url);
+        synchronized (LOCK) {
+            if (FeedPreferences.getFailureCount(context, key) != 0) {
+                FeedPreferences.removeFailure(context, key);
+            }
+        }
+    }
+
+    /**
+     * Record successful fetch of the feed
+     */
+    static void onSuccess(@NonNull Context context, @NonNull String url) {
+        String key = UrlHelper.normalize(url);
+        String host = UrlHelper.getHost(url);
+        synchronized (LOCK) {
+            HOST_PROBES.remove(host);
+            if (FeedPreferences.getFailureCount(context, key) != 0) {
+                FeedPreferences.removeFailure(context, key);
+            }
+            if (FeedPreferences.getHostFailureCount(context, host) != 0) {
+                FeedPreferences.removeHostFailure(context, host);
+            }
+        }
+    }
+
+    /**
+     * Record failed fetch of the feed
+     * <br>
+     * Cancelled fetches and failures without network connection aren't counted,
+     * malformed content and client errors are counted against the feed only
+     */
+    static void onFailure(@NonNull Context context, @NonNull String url,
+            @NonNull Exception exception) {
+        boolean gone = false;
+        boolean hostFailure;
+        if (exception instanceof ResponseCodeException) {
+            ResponseCodeException responseCodeException = (ResponseCodeException) exception;
+            gone = responseCodeException.isGone();
+            hostFailure = responseCodeException.isServerFailure();
+        } else if (exception instanceof InterruptedIOException &&
+                !(exception instanceof SocketTimeoutException)) {
+            return;
+        } else if (exception instanceof IOException) {
+            if (!ConnectivityHelper.isConnectedToNetwork(context)) {
+                return;
+            }
+            hostFailure = true;
+        } else {
+            hostFailure = false;
+        }
+        String key = UrlHelper.normalize(url);
+        String host = UrlHelper.getHost(url);
+        long time = System.currentTimeMillis();
+        synchronized (LOCK) {
+            int failures = FeedPreferences.getFailureCount(context, key) + 1;
+            int goneCount = 0;
+            long goneTime = Constants.NOT_DEFINED;
+            long retryTime;
+            if (gone) {
+                goneCount = FeedPreferences.getGoneCount(context, key) + 1;
+                goneTime = goneCount > 1 ? FeedPreferences.getGoneTime(context, key) : time;
+                if (goneCount >= GONE_THRESHOLD && time - goneTime >= GONE_PERIOD) {
+                    retryTime = RETRY_NEVER;
+                } else {
+                    retryTime = time + getBackoff(goneCount, GONE_BACKOFF_BASE, GONE_BACKOFF_MAX);
+                }
+            } else {
+                retryTime = time + getBackoff(failures, FEED_BACKOFF_BASE, FEED_BACKOFF_MAX);
+            }
+            FeedPreferences.setFailure(context, key, failures, retryTime, goneCount, goneTime);
+            HOST_PROBES.remove(host);
+            int hostFailures = FeedPreferences.getHostFailureCount(context, host);
+            if (hostFailure) {
+                hostFailures++;
+                long hostRetryTime = Constants.NOT_DEFINED;
+                if (hostFailures >= HOST_FAILURE_THRESHOLD) {
+                    hostRetryTime = time + getBackoff(hostFailures - HOST_FAILURE_THRESHOLD + 1,
+                            HOST_BACKOFF_BASE, HOST_BACKOFF_MAX);
+                }
+                FeedPreferences.setHostFailure(context, host, hostFailures, hostRetryTime);
+            } else if (hostFailures != 0) {
+                // Host responded
+                FeedPreferences.removeHostFailure(context, host);
+            }
+        }
+    }
+
+    /**
+     * Retry time of the open-circuited host, or deadline of its pending probe fetch
+     */
+    private static long getHostRetryTime(@NonNull Context context, @NonNull String host) {
+        long retryTime = FeedPreferences.getHostRetryTime(context, host);
+        Long probeDeadline = HOST_PROBES.get(host);
+        return probeDeadline == null ? retryTime : Math.max(retryTime, probeDeadline);
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": random value between the half
+     * and the whole of the exponential delay, to not retry all feeds at once
+     */
+    private static long getBackoff(int failures, long base, long max) {
+        long delay = Math.min(max, base << Math.min(failures - 1, BACKOFF_MAX_SHIFT));
+        long half = delay / 2;
+        return half + (long) (RANDOM.nextDouble() * (delay - half));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.budiyev.rssreader.model.data.Feed;
+import com.budiyev.rssreader.model.data.FeedCacheStats;
+import com.budiyev.rssreader.model.data.Message;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory LRU cache of feeds, weighted by approximate size of feeds in bytes
+ * <br>
+ * Pinned feeds (ones that are shown at the moment) are never evicted, but their size counts
+ * towards the budget
+ */
+final class FeedCache {
+    private static final int FEED_OVERHEAD = 128;
+    private static final int MESSAGE_OVERHEAD = 96;
+    private static final int STRING_OVERHEAD = 40;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> mPins = new HashMap<>();
+    private long mMaxSize;
+    private long mSize;
+    private long mHitCount;
+    private long mMissCount;
+    private long mLoadCount;
+    private long mLoadTime;
+    private long mEvictionCount;
+
+    FeedCache(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Cached feed, hit or miss is counted
+     */
+    @Nullable
+    synchronized Feed get(@NonNull String url) {
+        Entry entry = mEntries.get(url);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        } else {
+            mHitCount++;
+            return entry.mFeed;
+        }
+    }
+
+    /**
+     * Cached feed, hit or miss isn't counted
+     */
+    @Nullable
+    synchronized Feed peek(@NonNull String url) {
+        Entry entry = mEntries.get(url);
+        return entry == null ? null : entry.mFeed;
+    }
+
+    synchronized void put(@NonNull String url, @NonNull Feed feed) {
+        Entry entry = new Entry(feed);
+        Entry previous = mEntries.put(url, entry);
+        if (previous != null) {
+            mSize -= previous.mSize;
+        }
+        mSize += entry.mSize;
+        trimToSize(mMaxSize, url);
+    }
+
+    synchronized void remove(@NonNull String url) {
+        Entry entry = mEntries.remove(url);
+        if (entry != null) {
+            mSize -= entry.mSize;
+        }
+    }
+
+    /**
+     * Record load of a feed from disk
+     *
+     * @param time Load time in milliseconds
+     */
+    synchronized void onLoad(long time) {
+        mLoadCount++;
+        mLoadTime += time;
+    }
+
+    /**
+     * Pin feed for specified owner, feed that was pinned by the owner before is unpinned
+     *
+     * @param owner Owner key
+     * @param url   URL-address of the feed or {@code null} to unpin
+     */
+    synchronized void pin(@NonNull String owner, @Nullable String url) {
+        if (url == null) {
+            mPins.remove(owner);
+        } else {
+            mPins.put(owner, url);
+        }
+        trimToSize(mMaxSize, null);
+    }
+
+    synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize, null);
+    }
+
+    synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Evict least recently used feeds that aren't pinned, until size of the cache
+     * isn't greater than specified
+     *
+     * @param size Size in bytes
+     */
+    synchronized void trimToSize(long size) {
+        trimToSize(size, null);
+    }
+
+    @NonNull
+    synchronized FeedCacheStats getStats() {
+        return new FeedCacheStats(mEntries.size(), mSize, mMaxSize, mHitCount, mMissCount,
+                mLoadCount, mLoadTime, mEvictionCount);
+    }
+
+    /**
+     * @param keep Feed to keep even if it doesn't fit into size alone
+     */
+    private void trimToSize(long size, @Nullable String keep) {
+        for (Iterator<Map.Entry<String, Entry>> i = mEntries.entrySet().iterator();
+                mSize > size && i.hasNext(); ) {
+            Map.Entry<String, Entry> entry = i.next();
+            String url = entry.getKey();
+            if (url.equals(keep) || mPins.containsValue(url)) {
+                continue;
+            }
+            i.remove();
+            mSize -= entry.getValue().mSize;
+            mEvictionCount++;
+        }
+    }
+
+    private static long sizeOf(@NonNull Feed feed) {
+        long size = FEED_OVERHEAD + sizeOf(feed.getAddress()) + sizeOf(feed.getTitle()) +
+                sizeOf(feed.getDescription()) + sizeOf(feed.getLink()) +
+                sizeOf(feed.getLanguage()) + sizeOf(feed.getCopyright()) +
+                sizeOf(feed.getPublishDate());
+        List<Message> messages = feed.getMessages();
+        if (messages instanceof LazyMessageList) {
+            // Encoded messages are mapped from disk, only decoded ones take heap
+            return size + ((LazyMessageList) messages).getHeapSize();
+        }
+        for (Message message : messages) {
+            size += MESSAGE_OVERHEAD + sizeOf(message.getTitle()) +
+                    sizeOf(message.getDescription()) + sizeOf(message.getLink()) +
+                    sizeOf(message.getAuthor()) + sizeOf(message.getGuid());
+        }
+        return size;
+    }
+
+    private static long sizeOf(@Nullable String string) {
+        return string == null ? 0 : STRING_OVERHEAD + string.length() * 2;
+    }
+
+    private static final class Entry {
+        private final Feed mFeed;
+        private final long mSize;
+
+        private Entry(@NonNull Feed feed) {
+            mFeed = feed;
+            mSize = sizeOf(feed);
+        }
+    }
+}
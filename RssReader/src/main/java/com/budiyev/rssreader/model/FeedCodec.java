@@ -0,0 +1,399 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.budiyev.rssreader.model.data.Feed;
+import com.budiyev.rssreader.model.data.FeedInfo;
+import com.budiyev.rssreader.model.data.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary formats of cached feeds
+ * <br>
+ * Common layout, all numbers are big-endian:
+ * <ul>
+ * <li>magic number {@link #MAGIC} and 32-bit format version</li>
+ * <li>feed info fields</li>
+ * <li>32-bit number of messages and the table of messages</li>
+ * <li>message records</li>
+ * </ul>
+ * Field is a 32-bit length of UTF-8 bytes followed by the bytes, length of {@code null}
+ * is {@code -1}. Table allows to decode any message without reading preceding ones.
+ * <br>
+ * Table entry of {@link #VERSION_SNAPSHOT} is a 32-bit offset of the message record
+ * from the start of the file.
+ * <br>
+ * Table entry of {@link #VERSION_SEGMENT} is a 64-bit message key,
+ * see {@link FeedHistory#getMessageKey(Message)}, 64-bit time when the message was
+ * appended, 64-bit content hash, see {@link FeedHistory#getContentHash(Message)},
+ * and 32-bit offset of the message record. Entries of segments of the legacy
+ * version {@code 2} have no content hash.
+ */
+final class FeedCodec {
+    /**
+     * {@code "RSSF"}
+     */
+    static final int MAGIC = 0x52535346;
+    /**
+     * Whole feed in one file, legacy
+     */
+    static final int VERSION_SNAPSHOT = 1;
+    /**
+     * Segment of feed history, see {@link FeedHistory}
+     */
+    static final int VERSION_SEGMENT = 3;
+    /**
+     * Content hash of entries of legacy segments
+     */
+    static final long NO_HASH = 0;
+    private static final int VERSION_SEGMENT_LEGACY = 2;
+    private static final int ENTRY_SIZE = 28;
+    private static final int ENTRY_SIZE_LEGACY = 20;
+    private static final int NULL_LENGTH = -1;
+    private static final int MESSAGE_FIELDS_COUNT = 5;
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private FeedCodec() {
+    }
+
+    /**
+     * Whether if buffer starts with header of specified version
+     */
+    static boolean isVersion(@NonNull ByteBuffer buffer, int version) {
+        return buffer.limit() >= 8 && buffer.getInt(0) == MAGIC && buffer.getInt(4) == version;
+    }
+
+    /**
+     * Open encoded feed of {@link #VERSION_SNAPSHOT}, feed info is decoded immediately,
+     * messages are decoded on demand, see {@link LazyMessageList}, but bounds of their records
+     * are checked immediately
+     *
+     * @param buffer Encoded feed, buffer must not be modified after that
+     * @return Feed or {@code null} if data is corrupted
+     */
+    @Nullable
+    static Feed openSnapshot(@NonNull ByteBuffer buffer) {
+        try {
+            buffer = buffer.duplicate();
+            buffer.position(0);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION_SNAPSHOT) {
+                return null;
+            }
+            FeedInfo info = readInfo(buffer);
+            int count = buffer.getInt();
+            int tableOffset = buffer.position();
+            if (count < 0 || count > (buffer.limit() - tableOffset) / 4) {
+                return null;
+            }
+            int[] offsets = new int[count];
+            for (int i = 0, previous = tableOffset + count * 4; i < count; i++) {
+                int offset = buffer.getInt(tableOffset + i * 4);
+                if (offset < previous || offset >= buffer.limit()) {
+                    return null;
+                }
+                offsets[i] = offset;
+                previous = offset + getRecordLength(buffer, offset);
+            }
+            return new Feed(info, new LazyMessageList(new ByteBuffer[] {buffer}, new int[count],
+                    offsets, null));
+        } catch (BufferUnderflowException | IllegalArgumentException |
+                IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Open encoded segment of {@link #VERSION_SEGMENT}, bounds of message records are checked
+     * immediately, so that records can be decoded later without errors
+     *
+     * @param buffer Encoded segment, buffer must not be modified after that
+     * @return Segment or {@code null} if data is corrupted
+     */
+    @Nullable
+    static Segment openSegment(@NonNull ByteBuffer buffer) {
+        try {
+            buffer = buffer.duplicate();
+            buffer.position(0);
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            int version = buffer.getInt();
+            int entrySize;
+            if (version == VERSION_SEGMENT) {
+                entrySize = ENTRY_SIZE;
+            } else if (version == VERSION_SEGMENT_LEGACY) {
+                entrySize = ENTRY_SIZE_LEGACY;
+            } else {
+                return null;
+            }
+            FeedInfo info = readInfo(buffer);
+            int count = buffer.getInt();
+            int tableOffset = buffer.position();
+            if (count < 0 || count > (buffer.limit() - tableOffset) / entrySize) {
+                return null;
+            }
+            Segment segment = new Segment(buffer, info, tableOffset, entrySize, count);
+            for (int i = 0, previous = tableOffset + count * entrySize; i < count; i++) {
+                int offset = segment.getOffset(i);
+                if (offset < previous || offset >= buffer.limit()) {
+                    return null;
+                }
+                previous = offset + getRecordLength(buffer, offset);
+            }
+            return segment;
+        } catch (BufferUnderflowException | IllegalArgumentException |
+                IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decode message record
+     *
+     * @param buffer Encoded feed or segment
+     * @param offset Offset of the record
+     * @return Message
+     */
+    @NonNull
+    static Message decodeMessage(@NonNull ByteBuffer buffer, int offset) {
+        buffer = buffer.duplicate();
+        buffer.position(offset);
+        return new Message(readString(buffer), readString(buffer), readString(buffer),
+                readString(buffer), readString(buffer));
+    }
+
+    private static void writeInfo(@NonNull DataOutputStream output, @NonNull FeedInfo info)
+            throws IOException {
+        writeString(output, info.getAddress());
+        writeString(output, info.getTitle());
+        writeString(output, info.getDescription());
+        writeString(output, info.getLink());
+        writeString(output, info.getLanguage());
+        writeString(output, info.getCopyright());
+        writeString(output, info.getPublishDate());
+    }
+
+    @NonNull
+    private static FeedInfo readInfo(@NonNull ByteBuffer buffer) {
+        return new FeedInfo(readString(buffer), readString(buffer), readString(buffer),
+                readString(buffer), readString(buffer), readString(buffer), readString(buffer));
+    }
+
+    private static void writeString(@NonNull DataOutputStream output, @Nullable String string)
+            throws IOException {
+        if (string == null) {
+            output.writeInt(NULL_LENGTH);
+        } else {
+            byte[] bytes = string.getBytes(CHARSET);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    @Nullable
+    private static String readString(@NonNull ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    /**
+     * Length of encoded message record in bytes
+     */
+    private static int getRecordLength(@NonNull ByteBuffer buffer, int offset) {
+        int position = offset;
+        for (int i = 0; i < MESSAGE_FIELDS_COUNT; i++) {
+            int length = buffer.getInt(position);
+            position += 4;
+            if (length != NULL_LENGTH) {
+                if (length < 0 || length > buffer.limit() - position) {
+                    throw new BufferUnderflowException();
+                }
+                position += length;
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Decoded header and table of encoded segment, records are decoded on demand
+     */
+    static final class Segment {
+        private final ByteBuffer mBuffer;
+        private final FeedInfo mInfo;
+        private final int mTableOffset;
+        private final int mEntrySize;
+        private final int mSize;
+
+        private Segment(@NonNull ByteBuffer buffer, @NonNull FeedInfo info, int tableOffset,
+                int entrySize, int size) {
+            mBuffer = buffer;
+            mInfo = info;
+            mTableOffset = tableOffset;
+            mEntrySize = entrySize;
+            mSize = size;
+        }
+
+        @NonNull
+        ByteBuffer getBuffer() {
+            return mBuffer;
+        }
+
+        @NonNull
+        FeedInfo getInfo() {
+            return mInfo;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        long getKey(int index) {
+            return mBuffer.getLong(mTableOffset + index * mEntrySize);
+        }
+
+        long getTime(int index) {
+            return mBuffer.getLong(mTableOffset + index * mEntrySize + 8);
+        }
+
+        /**
+         * Content hash of the message or {@link #NO_HASH}
+         */
+        long getHash(int index) {
+            if (mEntrySize == ENTRY_SIZE_LEGACY) {
+                return NO_HASH;
+            }
+            return mBuffer.getLong(mTableOffset + index * mEntrySize + 16);
+        }
+
+        /**
+         * Offset of the message record
+         */
+        int getOffset(int index) {
+            return mBuffer.getInt(mTableOffset + (index + 1) * mEntrySize - 4);
+        }
+    }
+
+    /**
+     * Encoder of {@link #VERSION_SEGMENT}, entries are written in the order they were added
+     */
+    static final class SegmentWriter {
+        private final FeedInfo mInfo;
+        private final ByteArrayOutputStream mRecords = new ByteArrayOutputStream();
+        private final DataOutputStream mRecordsOutput = new DataOutputStream(mRecords);
+        private long[] mKeys = new long[16];
+        private long[] mTimes = new long[16];
+        private long[] mHashes = new long[16];
+        private int[] mOffsets = new int[16];
+        private int mSize;
+
+        SegmentWriter(@NonNull FeedInfo info) {
+            mInfo = info;
+        }
+
+        void addMessage(@NonNull Message message, long key, long hash, long time) throws
+                IOException {
+            addEntry(key, time, hash, mRecordsOutput.size());
+            writeString(mRecordsOutput, message.getTitle());
+            writeString(mRecordsOutput, message.getDescription());
+            writeString(mRecordsOutput, message.getLink());
+            writeString(mRecordsOutput, message.getAuthor());
+            writeString(mRecordsOutput, message.getGuid());
+        }
+
+        /**
+         * Copy entry of another segment, message record is copied without decoding
+         *
+         * @param hash Content hash of the message, entries of legacy segments don't have it
+         */
+        void addEntry(@NonNull Segment segment, int index, long hash) throws IOException {
+            int offset = segment.getOffset(index);
+            ByteBuffer buffer = segment.getBuffer().duplicate();
+            byte[] record = new byte[getRecordLength(buffer, offset)];
+            buffer.position(offset);
+            buffer.get(record);
+            addEntry(segment.getKey(index), segment.getTime(index), hash, mRecordsOutput.size());
+            mRecordsOutput.write(record);
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        void writeTo(@NonNull OutputStream outputStream) throws IOException {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerOutput = new DataOutputStream(header);
+            headerOutput.writeInt(MAGIC);
+            headerOutput.writeInt(VERSION_SEGMENT);
+            writeInfo(headerOutput, mInfo);
+            headerOutput.writeInt(mSize);
+            int recordsOffset = headerOutput.size() + mSize * ENTRY_SIZE;
+            for (int i = 0; i < mSize; i++) {
+                int offset = mOffsets[i];
+                headerOutput.writeLong(mKeys[i]);
+                headerOutput.writeLong(mTimes[i]);
+                headerOutput.writeLong(mHashes[i]);
+                headerOutput.writeInt(recordsOffset + offset);
+            }
+            headerOutput.flush();
+            mRecordsOutput.flush();
+            header.writeTo(outputStream);
+            mRecords.writeTo(outputStream);
+        }
+
+        private void addEntry(long key, long time, long hash, int offset) {
+            if (mSize == mKeys.length) {
+                int capacity = mSize * 2;
+                mKeys = Arrays.copyOf(mKeys, capacity);
+                mTimes = Arrays.copyOf(mTimes, capacity);
+                mHashes = Arrays.copyOf(mHashes, capacity);
+                mOffsets = Arrays.copyOf(mOffsets, capacity);
+            }
+            mKeys[mSize] = key;
+            mTimes[mSize] = time;
+            mHashes[mSize] = hash;
+            mOffsets[mSize] = offset;
+            mSize++;
+        }
+    }
+}
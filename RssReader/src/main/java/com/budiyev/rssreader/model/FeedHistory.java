@@ -0,0 +1,445 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.budiyev.rssreader.helper.HashHelper;
+import com.budiyev.rssreader.model.FeedCodec.Segment;
+import com.budiyev.rssreader.model.FeedCodec.SegmentWriter;
+import com.budiyev.rssreader.model.data.Feed;
+import com.budiyev.rssreader.model.data.FeedInfo;
+import com.budiyev.rssreader.model.data.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only message history of a feed
+ * <br>
+ * History is a directory of numbered segments, see {@link FeedCodec#VERSION_SEGMENT}.
+ * Each save appends a segment with messages that aren't in the history yet or whose content
+ * has changed since they were stored, so cost of a save depends on the number of new
+ * and edited messages, not on the size of the feed. Messages that publisher doesn't list
+ * anymore stay in the history.
+ * <br>
+ * Newer segments come first in the history, entry of newer segment hides entries
+ * with the same key in older ones, but is placed where the key was first appended,
+ * so edited message keeps its place. Segments are merged by {@link #compact(File)},
+ * oldest messages beyond {@link #MIN_HISTORY_SIZE} are dropped at that moment
+ * if they are older than {@link #MAX_HISTORY_AGE} or beyond {@link #MAX_HISTORY_SIZE}.
+ * <br>
+ * Not thread safe, operations on the same directory should be serialized by the caller.
+ */
+final class FeedHistory {
+    /**
+     * Number of segments, reaching which history needs compaction
+     */
+    static final int MAX_SEGMENTS = 8;
+    /**
+     * Size of segments in bytes, reaching which history needs compaction
+     */
+    static final long MAX_SEGMENTS_SIZE = 1024 * 1024;
+    static final int MIN_HISTORY_SIZE = 200;
+    static final int MAX_HISTORY_SIZE = 500;
+    static final long MAX_HISTORY_AGE = TimeUnit.DAYS.toMillis(30);
+    /**
+     * Nothing was written by {@link #append(File, Feed)}
+     */
+    static final int APPEND_UNCHANGED = 0;
+    /**
+     * Segment was written by {@link #append(File, Feed)}
+     */
+    static final int APPEND_CHANGED = 1;
+    /**
+     * Segment was written by {@link #append(File, Feed)} and history needs compaction,
+     * see {@link #compact(File)}
+     */
+    static final int APPEND_NEEDS_COMPACTION = 2;
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private FeedHistory() {
+    }
+
+    /**
+     * Open feed history, messages are decoded on demand, see {@link LazyMessageList}
+     *
+     * @param directory History directory
+     * @return Feed with info of the latest save or {@code null} if there is no history
+     */
+    @Nullable
+    static Feed open(@NonNull File directory) {
+        List<Segment> segments = openSegments(directory);
+        if (segments.isEmpty()) {
+            return null;
+        }
+        long[] entries = getVisibleEntries(segments);
+        ByteBuffer[] buffers = new ByteBuffer[segments.size()];
+        for (int s = 0; s < buffers.length; s++) {
+            buffers[s] = segments.get(s).getBuffer();
+        }
+        int[] bufferIndices = new int[entries.length];
+        int[] offsets = new int[entries.length];
+        long[] messageKeys = new long[entries.length];
+        for (int e = 0; e < entries.length; e++) {
+            int s = getSegmentIndex(entries[e]);
+            int i = getEntryIndex(entries[e]);
+            Segment segment = segments.get(s);
+            bufferIndices[e] = s;
+            offsets[e] = segment.getOffset(i);
+            messageKeys[e] = segment.getKey(i);
+        }
+        return new Feed(segments.get(0).getInfo(),
+                new LazyMessageList(buffers, bufferIndices, offsets, messageKeys));
+    }
+
+    /**
+     * Append messages of the feed that aren't in the history yet or were edited,
+     * feed info is updated
+     * <br>
+     * Segment isn't written if there are no such messages and info differs
+     * only in volatile fields, see {@link #isSameInfo(FeedInfo, FeedInfo)}
+     *
+     * @param directory History directory, created if not exists
+     * @param feed      Feed
+     * @return {@link #APPEND_UNCHANGED}, {@link #APPEND_CHANGED}
+     * or {@link #APPEND_NEEDS_COMPACTION}
+     */
+    static int append(@NonNull File directory, @NonNull Feed feed) throws IOException {
+        List<Segment> segments = openSegments(directory);
+        Map<Long, Long> entries = getEntries(segments);
+        Set<Long> appended = new HashSet<>();
+        SegmentWriter writer = new SegmentWriter(feed);
+        long time = System.currentTimeMillis();
+        for (Message message : feed.getMessages()) {
+            long key = getMessageKey(message);
+            if (!appended.add(key)) {
+                continue;
+            }
+            long hash = getContentHash(message);
+            long entryTime = time;
+            Long entry = entries.get(key);
+            if (entry != null) {
+                Segment segment = segments.get(getSegmentIndex(entry));
+                int index = getEntryIndex(entry);
+                if (getEntryHash(segment, index) == hash) {
+                    continue;
+                }
+                // Edited message keeps its place
+                entryTime = segment.getTime(index);
+            }
+            writer.addMessage(message, key, hash, entryTime);
+        }
+        if (writer.size() == 0 && !segments.isEmpty() &&
+                isSameInfo(segments.get(0).getInfo(), feed)) {
+            return APPEND_UNCHANGED;
+        }
+        writeSegment(directory, getNextSegmentNumber(directory), writer);
+        return needsCompaction(directory) ? APPEND_NEEDS_COMPACTION : APPEND_CHANGED;
+    }
+
+    static boolean needsCompaction(@NonNull File directory) {
+        File[] files = getSegmentFiles(directory);
+        if (files.length > MAX_SEGMENTS) {
+            return true;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        return files.length > 1 && size > MAX_SEGMENTS_SIZE;
+    }
+
+    /**
+     * Merge segments into one, dropping hidden entries and old messages,
+     * message records are copied without decoding
+     *
+     * @param directory History directory
+     * @return Whether if any messages were dropped
+     */
+    static boolean compact(@NonNull File directory) throws IOException {
+        File[] files = getSegmentFiles(directory);
+        List<Segment> segments = openSegments(files);
+        if (segments.isEmpty()) {
+            return false;
+        }
+        SegmentWriter writer = new SegmentWriter(segments.get(0).getInfo());
+        long oldestTime = System.currentTimeMillis() - MAX_HISTORY_AGE;
+        int messages = 0;
+        boolean dropped = false;
+        for (long entry : getVisibleEntries(segments)) {
+            Segment segment = segments.get(getSegmentIndex(entry));
+            int i = getEntryIndex(entry);
+            boolean recent = segment.getTime(i) >= oldestTime;
+            if (messages < MIN_HISTORY_SIZE || messages < MAX_HISTORY_SIZE && recent) {
+                writer.addEntry(segment, i, getEntryHash(segment, i));
+                messages++;
+            } else {
+                dropped = true;
+            }
+        }
+        writeSegment(directory, getSegmentNumber(files[files.length - 1]) + 1, writer);
+        for (File file : files) {
+            // Merged segment hides entries of the old ones, even if some of them are left
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+        return dropped;
+    }
+
+    /**
+     * Key of the message in the history, messages with the same key are considered the same,
+     * key is a hash of GUID or of link or of title if there is no GUID
+     */
+    static long getMessageKey(@NonNull Message message) {
+        String key = message.getGuid();
+        if (key == null) {
+            key = message.getLink();
+        }
+        if (key == null) {
+            key = message.getTitle();
+        }
+        return getKey(key);
+    }
+
+    /**
+     * Key of GUID, link or title, see {@link #getMessageKey(Message)}
+     */
+    static long getKey(@Nullable String string) {
+        return string == null ? 0 : HashHelper.generateFNV64(string);
+    }
+
+    /**
+     * Hash of all fields of the message, changes when the message is edited
+     */
+    static long getContentHash(@NonNull Message message) {
+        long hash = 1;
+        hash = hash * 31 + getKey(message.getTitle());
+        hash = hash * 31 + getKey(message.getDescription());
+        hash = hash * 31 + getKey(message.getLink());
+        hash = hash * 31 + getKey(message.getAuthor());
+        hash = hash * 31 + getKey(message.getGuid());
+        return hash;
+    }
+
+    /**
+     * Content hash of the message entry, message of legacy segment is decoded to compute it
+     */
+    private static long getEntryHash(@NonNull Segment segment, int index) {
+        long hash = segment.getHash(index);
+        if (hash == FeedCodec.NO_HASH) {
+            hash = getContentHash(
+                    FeedCodec.decodeMessage(segment.getBuffer(), segment.getOffset(index)));
+        }
+        return hash;
+    }
+
+    /**
+     * Whether if infos are the same, publish date isn't compared, some publishers
+     * update it on every request
+     */
+    private static boolean isSameInfo(@NonNull FeedInfo a, @NonNull FeedInfo b) {
+        return Objects.equals(a.getAddress(), b.getAddress()) &&
+                Objects.equals(a.getTitle(), b.getTitle()) &&
+                Objects.equals(a.getDescription(), b.getDescription()) &&
+                Objects.equals(a.getLink(), b.getLink()) &&
+                Objects.equals(a.getLanguage(), b.getLanguage()) &&
+                Objects.equals(a.getCopyright(), b.getCopyright());
+    }
+
+    /**
+     * Newest entry of each key of segments, entry is packed as index of the segment
+     * in the upper half and index of the entry in the lower half
+     */
+    @NonNull
+    private static Map<Long, Long> getEntries(@NonNull List<Segment> segments) {
+        int capacity = 0;
+        for (Segment segment : segments) {
+            capacity += segment.size();
+        }
+        Map<Long, Long> entries = new HashMap<>(capacity * 2);
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            for (int i = 0, c = segment.size(); i < c; i++) {
+                long key = segment.getKey(i);
+                if (!entries.containsKey(key)) {
+                    entries.put(key, (long) s << 32 | i);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Newest entry of each key of segments, placed where the key was first appended,
+     * newest first, see {@link #getEntries(List)}
+     */
+    @NonNull
+    private static long[] getVisibleEntries(@NonNull List<Segment> segments) {
+        Map<Long, Long> entries = getEntries(segments);
+        long[] visibleEntries = new long[entries.size()];
+        int size = 0;
+        // Oldest entry of each key is met first in reverse order
+        for (int s = segments.size() - 1; s >= 0; s--) {
+            Segment segment = segments.get(s);
+            for (int i = segment.size() - 1; i >= 0; i--) {
+                Long entry = entries.remove(segment.getKey(i));
+                if (entry != null) {
+                    visibleEntries[size++] = entry;
+                }
+            }
+        }
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            long entry = visibleEntries[i];
+            visibleEntries[i] = visibleEntries[j];
+            visibleEntries[j] = entry;
+        }
+        return visibleEntries;
+    }
+
+    private static int getSegmentIndex(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int getEntryIndex(long entry) {
+        return (int) entry;
+    }
+
+    @NonNull
+    private static List<Segment> openSegments(@NonNull File directory) {
+        return openSegments(getSegmentFiles(directory));
+    }
+
+    /**
+     * Map segments into memory, newest first, corrupted segments are skipped
+     *
+     * @param files Segment files sorted by number
+     */
+    @NonNull
+    private static List<Segment> openSegments(@NonNull File[] files) {
+        List<Segment> segments = new ArrayList<>(files.length);
+        for (int i = files.length - 1; i >= 0; i--) {
+            try (FileInputStream inputStream = new FileInputStream(files[i]);
+                    FileChannel channel = inputStream.getChannel()) {
+                // Mapping stays valid after the channel is closed
+                Segment segment = FeedCodec.openSegment(
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                if (segment != null) {
+                    segments.add(segment);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        return segments;
+    }
+
+    private static void writeSegment(@NonNull File directory, long number,
+            @NonNull SegmentWriter writer) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory: " + directory);
+        }
+        File segmentFile = new File(directory, number + SEGMENT_FILE_SUFFIX);
+        File tempFile = new File(directory, number + TEMP_FILE_SUFFIX);
+        try (OutputStream outputStream = new BufferedOutputStream(
+                new FileOutputStream(tempFile))) {
+            writer.writeTo(outputStream);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw e;
+        }
+        // Readers never see partially written segment
+        if (!tempFile.renameTo(segmentFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw new IOException("Unable to write segment: " + segmentFile);
+        }
+    }
+
+    private static long getNextSegmentNumber(@NonNull File directory) {
+        File[] files = getSegmentFiles(directory);
+        return files.length == 0 ? 0 : getSegmentNumber(files[files.length - 1]) + 1;
+    }
+
+    /**
+     * Segment files sorted by number
+     */
+    @NonNull
+    private static File[] getSegmentFiles(@NonNull File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        List<File> segmentFiles = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (getSegmentNumber(file) != -1) {
+                segmentFiles.add(file);
+            }
+        }
+        Collections.sort(segmentFiles, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long numberA = getSegmentNumber(a);
+                long numberB = getSegmentNumber(b);
+                return numberA < numberB ? -1 : numberA == numberB ? 0 : 1;
+            }
+        });
+        return segmentFiles.toArray(new File[segmentFiles.size()]);
+    }
+
+    /**
+     * Number of the segment or {@code -1} if the file isn't a segment
+     */
+    private static long getSegmentNumber(@NonNull File file) {
+        String name = file.getName();
+        if (!name.endsWith(SEGMENT_FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            long number = Long.parseLong(
+                    name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+            return number < 0 ? -1 : number;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
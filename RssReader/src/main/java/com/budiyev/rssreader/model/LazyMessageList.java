@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.budiyev.rssreader.model.data.Feed;
+import com.budiyev.rssreader.model.data.Message;
+
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of messages of encoded feed or feed history, see {@link FeedCodec}
+ * <br>
+ * Messages are decoded on demand by blocks of neighbours, a few recently used blocks
+ * are kept strongly, other decoded messages are kept softly, so the same message
+ * instance (with its parsed spans) is returned while it's reachable
+ */
+final class LazyMessageList extends AbstractList<Message>
+        implements RandomAccess, Feed.GuidIndexedList {
+    private static final int BLOCK_SIZE = 16;
+    private static final int MAX_BLOCKS = 4;
+    private static final int CHARS_PER_BYTE = 2;
+    private final ByteBuffer[] mBuffers;
+    private final int[] mBufferIndices;
+    private final int[] mOffsets;
+    private final long[] mKeys;
+    private final SoftReference<Message>[] mMessages;
+    private final Map<Integer, Message[]> mBlocks =
+            new LinkedHashMap<Integer, Message[]>(MAX_BLOCKS * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Message[]> eldest) {
+                    return size() > MAX_BLOCKS;
+                }
+            };
+    private Map<Long, Integer> mKeyIndices;
+
+    /**
+     * @param buffers       Encoded feed or segments of feed history
+     * @param bufferIndices Index of the buffer of each message
+     * @param offsets       Offset of the record of each message in its buffer
+     * @param keys          Key of each message, see {@link FeedHistory#getMessageKey(Message)},
+     *                      or {@code null} if unknown
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LazyMessageList(@NonNull ByteBuffer[] buffers, @NonNull int[] bufferIndices,
+            @NonNull int[] offsets, @Nullable long[] keys) {
+        mBuffers = buffers;
+        mBufferIndices = bufferIndices;
+        mOffsets = offsets;
+        mKeys = keys;
+        mMessages = new SoftReference[offsets.length];
+    }
+
+    @Override
+    public synchronized Message get(int index) {
+        int size = mOffsets.length;
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int block = index / BLOCK_SIZE;
+        Message[] messages = mBlocks.get(block);
+        if (messages == null) {
+            int start = block * BLOCK_SIZE;
+            messages = new Message[Math.min(BLOCK_SIZE, size - start)];
+            for (int i = 0; i < messages.length; i++) {
+                SoftReference<Message> reference = mMessages[start + i];
+                Message message = reference == null ? null : reference.get();
+                if (message == null) {
+                    message = FeedCodec.decodeMessage(mBuffers[mBufferIndices[start + i]],
+                            mOffsets[start + i]);
+                    mMessages[start + i] = new SoftReference<>(message);
+                }
+                messages[i] = message;
+            }
+            mBlocks.put(block, messages);
+        }
+        return messages[index - block * BLOCK_SIZE];
+    }
+
+    @Override
+    public int size() {
+        return mOffsets.length;
+    }
+
+    /**
+     * Position of the message with specified GUID, found by message keys,
+     * only the found message is decoded
+     */
+    @Override
+    public int indexOfGuid(@NonNull String guid) {
+        if (mKeys == null) {
+            for (int i = 0, s = mOffsets.length; i < s; i++) {
+                if (guid.equals(get(i).getGuid())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        Integer index;
+        synchronized (this) {
+            Map<Long, Integer> keyIndices = mKeyIndices;
+            if (keyIndices == null) {
+                keyIndices = new HashMap<>(mKeys.length * 2);
+                for (int i = mKeys.length - 1; i >= 0; i--) {
+                    keyIndices.put(mKeys[i], i);
+                }
+                mKeyIndices = keyIndices;
+            }
+            index = keyIndices.get(FeedHistory.getKey(guid));
+        }
+        // Messages have unique keys, message with different GUID means there's no such GUID
+        return index != null && guid.equals(get(index).getGuid()) ? index : -1;
+    }
+
+    /**
+     * Approximate heap size of strongly kept decoded messages
+     */
+    long getHeapSize() {
+        int size = mOffsets.length;
+        if (size == 0) {
+            return 0;
+        }
+        long buffersSize = 0;
+        for (ByteBuffer buffer : mBuffers) {
+            buffersSize += buffer.limit();
+        }
+        long averageRecordSize = buffersSize / size;
+        return Math.min(size, BLOCK_SIZE * MAX_BLOCKS) * averageRecordSize * CHARS_PER_BYTE;
+    }
+}
@@ -23,24 +23,36 @@
  */
 package com.budiyev.rssreader.model;
 
+import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.util.Xml;
 
+import com.budiyev.rssreader.helper.EncodingHelper;
 import com.budiyev.rssreader.helper.UrlHelper;
 import com.budiyev.rssreader.model.data.Feed;
 import com.budiyev.rssreader.model.data.FeedInfo;
+import com.budiyev.rssreader.model.data.InfoProbe;
 import com.budiyev.rssreader.model.data.Message;
+import com.budiyev.rssreader.model.data.PollHints;
+import com.budiyev.rssreader.model.fetch.FetchRequest;
+import com.budiyev.rssreader.model.fetch.FetchResponse;
+import com.budiyev.rssreader.model.fetch.Fetcher;
+import com.budiyev.rssreader.model.fetch.ResponseCodeException;
+import com.budiyev.rssreader.model.preferences.Constants;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 public final class Loader {
     private static final String LOG_TAG = "Reader";
@@ -55,53 +67,205 @@ public final class Loader {
     private static final String ITEM = "item";
     private static final String PUBLISH_DATE = "pubDate";
     private static final String GUID = "guid";
+    private static final String TIME_TO_LIVE = "ttl";
+    private static final String SKIP_HOURS = "skipHours";
+    private static final String HOUR = "hour";
+    private static final String SKIP_DAYS = "skipDays";
+    private static final String DAY = "day";
+    private static final String UPDATE_PERIOD = "sy:updatePeriod";
+    private static final String UPDATE_FREQUENCY = "sy:updateFrequency";
+    private static final int TAG_UNKNOWN = 0;
+    private static final int TAG_RSS = 1;
+    private static final int TAG_CHANNEL = 2;
+    private static final int TAG_TITLE = 3;
+    private static final int TAG_DESCRIPTION = 4;
+    private static final int TAG_LANGUAGE = 5;
+    private static final int TAG_COPYRIGHT = 6;
+    private static final int TAG_LINK = 7;
+    private static final int TAG_AUTHOR = 8;
+    private static final int TAG_ITEM = 9;
+    private static final int TAG_PUBLISH_DATE = 10;
+    private static final int TAG_GUID = 11;
+    private static final int TAG_TIME_TO_LIVE = 12;
+    private static final int TAG_SKIP_HOURS = 13;
+    private static final int TAG_HOUR = 14;
+    private static final int TAG_SKIP_DAYS = 15;
+    private static final int TAG_DAY = 16;
+    private static final int TAG_UPDATE_PERIOD = 17;
+    private static final int TAG_UPDATE_FREQUENCY = 18;
+    private static final int KNOWN_RUN_LENGTH = 3;
+    private static final long INFO_BYTE_LIMIT = 256 * 1024L;
+    private static final String HEADER_ENTITY_TAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    /**
+     * Names of tags, in order of tag identifiers
+     */
+    private static final String[] TAG_NAMES =
+            {null, RSS, CHANNEL, TITLE, DESCRIPTION, LANGUAGE, COPYRIGHT, LINK, AUTHOR, ITEM,
+                    PUBLISH_DATE, GUID, TIME_TO_LIVE, SKIP_HOURS, HOUR, SKIP_DAYS, DAY,
+                    UPDATE_PERIOD, UPDATE_FREQUENCY};
+
+    /**
+     * Values of {@code <day>} element, in order of {@link Calendar} days
+     */
+    private static final String[] DAY_NAMES =
+            {"Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"};
+
+    /**
+     * Values of {@code <sy:updatePeriod>} element
+     */
+    private static final String[] UPDATE_PERIOD_NAMES =
+            {"hourly", "daily", "weekly", "monthly", "yearly"};
+
+    /**
+     * Durations of update periods, in order of {@link #UPDATE_PERIOD_NAMES}
+     */
+    private static final long[] UPDATE_PERIODS =
+            {DateUtils.HOUR_IN_MILLIS, DateUtils.DAY_IN_MILLIS, DateUtils.WEEK_IN_MILLIS,
+                    30 * DateUtils.DAY_IN_MILLIS, DateUtils.YEAR_IN_MILLIS};
+
+    // Perfect hash table of tag names: each name has its own slot, lookup costs
+    // one hash and one string comparison
+
+    private static final String[] TAG_TABLE_NAMES;
+    private static final int[] TAG_TABLE_IDS;
+    private static final int TAG_TABLE_SHIFT;
+
+    private static final ThreadLocal<XmlPullParser> PARSERS = new ThreadLocal<>();
+
+    static {
+        for (int shift = 32 - Integer.numberOfTrailingZeros(
+                Integer.highestOneBit(TAG_NAMES.length) << 1); ; shift--) {
+            int size = 1 << (32 - shift);
+            String[] names = new String[size];
+            int[] ids = new int[size];
+            boolean perfect = true;
+            for (int id = TAG_UNKNOWN + 1; id < TAG_NAMES.length; id++) {
+                int index = getTagIndex(TAG_NAMES[id].hashCode(), shift);
+                if (names[index] != null) {
+                    perfect = false;
+                    break;
+                }
+                names[index] = TAG_NAMES[id];
+                ids[index] = id;
+            }
+            if (perfect) {
+                TAG_TABLE_NAMES = names;
+                TAG_TABLE_IDS = ids;
+                TAG_TABLE_SHIFT = shift;
+                break;
+            }
+        }
+    }
 
     private Loader() {
     }
 
     /**
      * Read RSS feed by specified URL-address
+     * <br>
+     * If the feed is cached, request is conditional and the cached feed is returned
+     * as is when server responds that it wasn't modified, otherwise the feed is saved,
+     * see {@link Repository#setFeed(Context, String, Feed, String, String)}
      *
+     * @param context   Context
      * @param urlString URL-address of the feed
-     * @return Feed or {@code null} if the feed can't be read from the specified URL-address
+     * @return Cached feed or {@code null} if the feed can't be read from the specified
+     * URL-address
      */
     @Nullable
-    public static Feed loadFeed(@NonNull String urlString) {
+    public static Feed loadFeed(@NonNull Context context, @NonNull String urlString) {
         urlString = UrlHelper.validateScheme(urlString);
-        try {
-            HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
-            try (InputStream input = connection.getInputStream()) {
-                XmlPullParser parser = Xml.newPullParser();
-                parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
-                parser.setInput(input, connection.getContentEncoding());
-                parser.nextTag();
-                return readMessages(parser, readFeedInfo(urlString, parser));
+        Feed cachedFeed = Repository.getFeed(context, urlString);
+        try (FetchResponse response = Fetcher
+                .fetch(newRequest(context, urlString, cachedFeed))) {
+            if (cachedFeed != null && response.isNotModified()) {
+                FailureTracker.onSuccess(context, urlString);
+                PollScheduler.onFeedLoaded(context, urlString, null,
+                        response.getFreshnessLifetime(), 0);
+                return cachedFeed;
+            }
+            requireSuccess(response);
+            try (BufferedInputStream input = response.getContent()) {
+                XmlPullParser parser = obtainParser(response, input);
+                try {
+                    ChannelHints hints = new ChannelHints();
+                    Feed feed = readMessages(parser, readFeedInfo(urlString, parser, hints),
+                            cachedFeed);
+                    int newMessages = countNewMessages(cachedFeed, feed);
+                    feed = Repository.setFeed(context, urlString, feed,
+                            response.getHeader(HEADER_ENTITY_TAG),
+                            response.getHeader(HEADER_LAST_MODIFIED));
+                    FailureTracker.onSuccess(context, urlString);
+                    PollScheduler.onFeedLoaded(context, urlString, hints.toPollHints(),
+                            response.getFreshnessLifetime(), newMessages);
+                    return feed;
+                } finally {
+                    releaseParser(parser);
+                }
             }
         } catch (XmlPullParserException | IOException e) {
             Log.w(LOG_TAG, "Unable to read RSS feed.", e);
+            FailureTracker.onFailure(context, urlString, e);
             return null;
         }
     }
 
     /**
      * Read RSS feed info by specified URL-address
+     * <br>
+     * If the feed is cached, request is conditional and the cached feed is returned
+     * as is when server responds that it wasn't modified
      *
+     * @param context   Context
      * @param urlString URL-address of the feed
      * @return Feed info or {@code null} if the feed info can't be read
      * from the specified URL-address
+     * @see #probeInfo(Context, String, long)
      */
     @Nullable
-    public static FeedInfo loadInfo(@NonNull String urlString) {
+    public static FeedInfo loadInfo(@NonNull Context context, @NonNull String urlString) {
+        InfoProbe probe = probeInfo(context, urlString, INFO_BYTE_LIMIT);
+        return probe == null ? null : probe.getInfo();
+    }
+
+    /**
+     * Read RSS feed info by specified URL-address, only the channel metadata is downloaded,
+     * connection is closed right after it
+     * <br>
+     * If the feed is cached, request is conditional and the cached feed is returned
+     * as is when server responds that it wasn't modified
+     *
+     * @param context   Context
+     * @param urlString URL-address of the feed
+     * @param byteLimit Maximum number of bytes to download
+     * @return Probe result or {@code null} if the feed info can't be read
+     * from the specified URL-address within {@code byteLimit}
+     */
+    @Nullable
+    public static InfoProbe probeInfo(@NonNull Context context, @NonNull String urlString,
+            long byteLimit) {
         urlString = UrlHelper.validateScheme(urlString);
-        try {
-            HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
-            try (InputStream input = connection.getInputStream()) {
-                XmlPullParser parser = Xml.newPullParser();
-                parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
-                parser.setInput(input, connection.getContentEncoding());
-                parser.nextTag();
-                return readFeedInfo(urlString, parser);
+        Feed cachedFeed = Repository.getFeed(context, urlString);
+        try (FetchResponse response = Fetcher
+                .fetch(newRequest(context, urlString, cachedFeed).setByteLimit(byteLimit))) {
+            if (cachedFeed != null && response.isNotModified()) {
+                return new InfoProbe(cachedFeed, response.getBytesRead());
+            }
+            requireSuccess(response);
+            FeedInfo info;
+            try (BufferedInputStream input = response.getContent()) {
+                XmlPullParser parser = obtainParser(response, input);
+                try {
+                    info = readFeedInfo(urlString, parser, null);
+                } finally {
+                    releaseParser(parser);
+                }
             }
+            // Rest of the feed isn't needed
+            response.abort();
+            return new InfoProbe(info, response.getBytesRead());
         } catch (XmlPullParserException | IOException e) {
             Log.w(LOG_TAG, "Unable to read feed info.", e);
             return null;
@@ -109,8 +273,60 @@ public final class Loader {
     }
 
     @NonNull
-    private static FeedInfo readFeedInfo(@NonNull String urlString,
-            @NonNull XmlPullParser parser) throws IOException, XmlPullParserException {
+    private static FetchRequest newRequest(@NonNull Context context, @NonNull String urlString,
+            @Nullable Feed cachedFeed) {
+        FetchRequest request = new FetchRequest(urlString);
+        if (cachedFeed != null) {
+            request.setValidators(Repository.getEntityTag(context, urlString),
+                    Repository.getLastModified(context, urlString));
+        }
+        return request;
+    }
+
+    private static void requireSuccess(@NonNull FetchResponse response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new ResponseCodeException(response.getCode());
+        }
+    }
+
+    /**
+     * Parser of the current thread, set to read specified input
+     * <br>
+     * Parser must be released by {@link #releaseParser(XmlPullParser)} after use
+     */
+    @NonNull
+    private static XmlPullParser obtainParser(@NonNull FetchResponse response,
+            @NonNull BufferedInputStream input) throws IOException, XmlPullParserException {
+        XmlPullParser parser = PARSERS.get();
+        if (parser == null) {
+            parser = Xml.newPullParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            PARSERS.set(parser);
+        }
+        parser.setInput(input, EncodingHelper.detectXmlCharset(input, response.getContentType()));
+        parser.nextTag();
+        return parser;
+    }
+
+    /**
+     * Release input of the parser, to not hold the stream and its buffers
+     * until the next use
+     */
+    private static void releaseParser(@NonNull XmlPullParser parser) {
+        try {
+            parser.setInput(null);
+        } catch (XmlPullParserException ignored) {
+        }
+    }
+
+    /**
+     * Read channel metadata, parser is left at the first item
+     *
+     * @param hints Channel schedule hints to fill, or {@code null} to skip them
+     */
+    @NonNull
+    private static FeedInfo readFeedInfo(@NonNull String urlString, @NonNull XmlPullParser parser,
+            @Nullable ChannelHints hints) throws IOException, XmlPullParserException {
         requireTag(parser, RSS);
         parser.nextTag();
         requireTag(parser, CHANNEL);
@@ -120,103 +336,348 @@ public final class Loader {
         String language = null;
         String copyright = null;
         String publishDate = null;
-        for (String name; ; ) {
-            if (parser.next() == XmlPullParser.END_DOCUMENT) {
+        loop:
+        for (; ; ) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.END_DOCUMENT || eventType == XmlPullParser.END_TAG) {
                 break;
             }
-            if (parser.getEventType() != XmlPullParser.START_TAG) {
+            if (eventType != XmlPullParser.START_TAG) {
                 continue;
             }
-            name = parser.getName();
-            if (ITEM.equals(name)) {
-                break;
-            }
-            if (TITLE.equals(name)) {
-                title = readText(parser);
-            } else if (DESCRIPTION.equals(name)) {
-                description = readText(parser);
-            } else if (LINK.equals(name)) {
-                link = readText(parser);
-            } else if (LANGUAGE.equals(name)) {
-                language = readText(parser);
-            } else if (COPYRIGHT.equals(name)) {
-                copyright = readText(parser);
-            } else if (PUBLISH_DATE.equals(name)) {
-                publishDate = readText(parser);
+            switch (getTagId(parser.getName())) {
+                case TAG_ITEM:
+                    break loop;
+                case TAG_TITLE:
+                    title = readText(parser);
+                    break;
+                case TAG_DESCRIPTION:
+                    description = readText(parser);
+                    break;
+                case TAG_LINK:
+                    link = readText(parser);
+                    break;
+                case TAG_LANGUAGE:
+                    language = readText(parser);
+                    break;
+                case TAG_COPYRIGHT:
+                    copyright = readText(parser);
+                    break;
+                case TAG_PUBLISH_DATE:
+                    publishDate = readText(parser);
+                    break;
+                case TAG_TIME_TO_LIVE:
+                case TAG_SKIP_HOURS:
+                case TAG_SKIP_DAYS:
+                case TAG_UPDATE_PERIOD:
+                case TAG_UPDATE_FREQUENCY:
+                    if (hints == null) {
+                        skipElement(parser);
+                    } else {
+                        readHint(parser, hints);
+                    }
+                    break;
+                default:
+                    skipElement(parser);
+                    break;
             }
         }
         return new FeedInfo(urlString, title, description, link, language, copyright, publishDate);
     }
 
+    /**
+     * Read messages of the feed
+     * <br>
+     * If {@code cachedFeed} is specified, reading stops as soon as a run of already known
+     * messages is reached, the rest of messages is in the history already and it follows
+     * them once the feed is saved, see {@link Repository#setFeed(Context, String, Feed,
+     * String, String)}, so cached messages aren't decoded to be copied
+     */
     @NonNull
-    private static Feed readMessages(@NonNull XmlPullParser parser,
-            @NonNull FeedInfo feedInfo) throws IOException, XmlPullParserException {
+    private static Feed readMessages(@NonNull XmlPullParser parser, @NonNull FeedInfo feedInfo,
+            @Nullable Feed cachedFeed) throws IOException, XmlPullParserException {
         Feed feed = new Feed(feedInfo);
         List<Message> messages = feed.getMessages();
-        for (; ; ) {
-            int eventType = parser.getEventType();
-            if (eventType == XmlPullParser.END_DOCUMENT ||
-                    eventType == XmlPullParser.END_TAG && CHANNEL.equals(parser.getName())) {
+        List<Message> cachedMessages =
+                cachedFeed == null ? Collections.<Message>emptyList() : cachedFeed.getMessages();
+        int knownRunLength = Math.min(KNOWN_RUN_LENGTH, cachedMessages.size());
+        int knownRun = 0;
+        for (int eventType = parser.getEventType(); ; eventType = parser.next()) {
+            if (eventType == XmlPullParser.END_DOCUMENT || eventType == XmlPullParser.END_TAG) {
                 break;
             }
             if (eventType != XmlPullParser.START_TAG) {
-                parser.next();
                 continue;
             }
-            messages.add(readMessage(parser));
+            if (getTagId(parser.getName()) != TAG_ITEM) {
+                skipElement(parser);
+                continue;
+            }
+            Message message = readMessage(parser);
+            String guid = message.getGuid();
+            int knownIndex = guid == null || cachedFeed == null ? -1 : cachedFeed.indexOf(guid);
+            Message knownMessage = knownIndex == -1 ? null : cachedMessages.get(knownIndex);
+            if (knownMessage == null || !isSameContent(knownMessage, message)) {
+                // New or edited message
+                knownRun = 0;
+            } else {
+                // Known instance keeps its parsed spans
+                message = knownMessage;
+                knownRun++;
+            }
+            messages.add(message);
+            if (cachedFeed != null && knownRunLength > 0 && knownRun == knownRunLength) {
+                break;
+            }
         }
         return feed;
     }
 
+    private static void readHint(@NonNull XmlPullParser parser, @NonNull ChannelHints hints)
+            throws IOException, XmlPullParserException {
+        switch (getTagId(parser.getName())) {
+            case TAG_TIME_TO_LIVE:
+                int minutes = parseInt(readText(parser));
+                if (minutes > 0) {
+                    hints.mTimeToLive = minutes * DateUtils.MINUTE_IN_MILLIS;
+                }
+                break;
+            case TAG_SKIP_HOURS:
+                for (String hour : readChildTexts(parser, TAG_HOUR)) {
+                    int value = parseInt(hour);
+                    // Both 0 and 24 are used for midnight
+                    if (value >= 0 && value <= 24) {
+                        hints.mSkipHours |= 1 << (value % 24);
+                    }
+                }
+                break;
+            case TAG_SKIP_DAYS:
+                for (String day : readChildTexts(parser, TAG_DAY)) {
+                    int index = indexOfIgnoreCase(DAY_NAMES, day);
+                    if (index != -1) {
+                        hints.mSkipDays |= 1 << index;
+                    }
+                }
+                break;
+            case TAG_UPDATE_PERIOD:
+                int index = indexOfIgnoreCase(UPDATE_PERIOD_NAMES, readText(parser));
+                if (index != -1) {
+                    hints.mUpdatePeriod = UPDATE_PERIODS[index];
+                }
+                break;
+            case TAG_UPDATE_FREQUENCY:
+                int frequency = parseInt(readText(parser));
+                if (frequency > 0) {
+                    hints.mUpdateFrequency = frequency;
+                }
+                break;
+            default:
+                skipElement(parser);
+                break;
+        }
+    }
+
+    /**
+     * Read texts of child elements with specified tag, other children are skipped,
+     * parser is left at the end tag of the current element
+     */
+    @NonNull
+    private static List<String> readChildTexts(@NonNull XmlPullParser parser, int tagId)
+            throws IOException, XmlPullParserException {
+        List<String> texts = new ArrayList<>();
+        for (; ; ) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.END_DOCUMENT || eventType == XmlPullParser.END_TAG) {
+                break;
+            }
+            if (eventType != XmlPullParser.START_TAG) {
+                continue;
+            }
+            if (getTagId(parser.getName()) == tagId) {
+                String text = readText(parser);
+                if (text != null) {
+                    texts.add(text);
+                }
+            } else {
+                skipElement(parser);
+            }
+        }
+        return texts;
+    }
+
+    private static int parseInt(@Nullable String text) {
+        if (text == null) {
+            return Constants.NOT_DEFINED;
+        }
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return Constants.NOT_DEFINED;
+        }
+    }
+
+    private static int indexOfIgnoreCase(@NonNull String[] values, @Nullable String text) {
+        if (text == null) {
+            return -1;
+        }
+        text = text.trim();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equalsIgnoreCase(text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of messages of the feed with GUIDs that aren't in the cached feed,
+     * or {@link Constants#NOT_DEFINED} if there is no cached feed
+     */
+    private static int countNewMessages(@Nullable Feed cachedFeed, @NonNull Feed feed) {
+        if (cachedFeed == null) {
+            return Constants.NOT_DEFINED;
+        }
+        int count = 0;
+        for (Message message : feed.getMessages()) {
+            String guid = message.getGuid();
+            if (guid != null && cachedFeed.indexOf(guid) == -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether if messages have the same content, {@link Message#equals(Object)}
+     * compares GUIDs only
+     */
+    private static boolean isSameContent(@NonNull Message a, @NonNull Message b) {
+        return Objects.equals(a.getTitle(), b.getTitle()) &&
+                Objects.equals(a.getDescription(), b.getDescription()) &&
+                Objects.equals(a.getLink(), b.getLink()) &&
+                Objects.equals(a.getAuthor(), b.getAuthor()) &&
+                Objects.equals(a.getGuid(), b.getGuid());
+    }
+
     @NonNull
     private static Message readMessage(@NonNull XmlPullParser parser) throws IOException,
             XmlPullParserException {
-        requireTag(parser, ITEM);
         String title = null;
         String description = null;
         String link = null;
         String author = null;
         String guid = null;
-        for (String name; ; ) {
-            if (parser.next() == XmlPullParser.END_DOCUMENT) {
-                break;
-            }
-            int eventType = parser.getEventType();
-            name = parser.getName();
-            if (eventType == XmlPullParser.END_TAG && ITEM.equals(name)) {
+        for (; ; ) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.END_DOCUMENT || eventType == XmlPullParser.END_TAG) {
                 break;
             }
             if (eventType != XmlPullParser.START_TAG) {
                 continue;
             }
-            if (TITLE.equals(name)) {
-                title = readText(parser);
-            } else if (DESCRIPTION.equals(name)) {
-                description = readText(parser);
-            } else if (LINK.equals(name)) {
-                link = readText(parser);
-            } else if (AUTHOR.equals(name)) {
-                author = readText(parser);
-            } else if (GUID.equals(name)) {
-                guid = readText(parser);
+            switch (getTagId(parser.getName())) {
+                case TAG_TITLE:
+                    title = readText(parser);
+                    break;
+                case TAG_DESCRIPTION:
+                    description = readText(parser);
+                    break;
+                case TAG_LINK:
+                    link = readText(parser);
+                    break;
+                case TAG_AUTHOR:
+                    author = readText(parser);
+                    break;
+                case TAG_GUID:
+                    guid = readText(parser);
+                    break;
+                default:
+                    skipElement(parser);
+                    break;
             }
         }
         return new Message(title, description, link, author, guid);
     }
 
+    /**
+     * Read text of current element, parser is left at the end tag of the element
+     */
     @Nullable
     private static String readText(@NonNull XmlPullParser parser) throws IOException,
             XmlPullParserException {
         String result = null;
-        if (parser.next() == XmlPullParser.TEXT) {
-            result = parser.getText();
-            parser.nextTag();
+        for (int depth = 1; depth > 0; ) {
+            switch (parser.next()) {
+                case XmlPullParser.TEXT:
+                    if (depth == 1 && result == null) {
+                        result = parser.getText();
+                    }
+                    break;
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    return result;
+            }
         }
         return result;
     }
 
+    /**
+     * Skip current element with all its content without materializing text,
+     * parser is left at the end tag of the element
+     */
+    private static void skipElement(@NonNull XmlPullParser parser) throws IOException,
+            XmlPullParserException {
+        for (int depth = 1; depth > 0; ) {
+            switch (parser.next()) {
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    return;
+            }
+        }
+    }
+
+    private static int getTagId(@Nullable String name) {
+        if (name == null) {
+            return TAG_UNKNOWN;
+        }
+        int index = getTagIndex(name.hashCode(), TAG_TABLE_SHIFT);
+        return name.equals(TAG_TABLE_NAMES[index]) ? TAG_TABLE_IDS[index] : TAG_UNKNOWN;
+    }
+
+    private static int getTagIndex(int hash, int shift) {
+        return (hash * 0x9e3779b9) >>> shift;
+    }
+
     private static void requireTag(@NonNull XmlPullParser parser, @Nullable String name) throws
             IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, name);
     }
+
+    /**
+     * Schedule hints of the channel being read
+     */
+    private static final class ChannelHints {
+        private long mTimeToLive = Constants.NOT_DEFINED;
+        private long mUpdatePeriod = Constants.NOT_DEFINED;
+        private int mUpdateFrequency = 1;
+        private int mSkipHours;
+        private int mSkipDays;
+
+        @NonNull
+        private PollHints toPollHints() {
+            long updateInterval = mUpdatePeriod == Constants.NOT_DEFINED ? Constants.NOT_DEFINED :
+                    mUpdatePeriod / mUpdateFrequency;
+            return new PollHints(mTimeToLive, updateInterval, mSkipHours, mSkipDays);
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.format.DateUtils;
+
+import com.budiyev.rssreader.helper.UrlHelper;
+import com.budiyev.rssreader.model.data.PollHints;
+import com.budiyev.rssreader.model.preferences.Constants;
+import com.budiyev.rssreader.model.preferences.FeedPreferences;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Adaptive poll schedule of feeds
+ * <br>
+ * Poll interval is learned from the observed interval between new messages of the feed
+ * and stretched by channel hints ({@code <ttl>}, {@code <sy:updatePeriod>}) and HTTP
+ * freshness of the last response. Result is bounded by the interval chosen by user from
+ * below and by {@link #MAX_INTERVAL} from above (or by user interval, if it's greater),
+ * polls that fall into {@code <skipHours>} or {@code <skipDays>} are postponed.
+ */
+public final class PollScheduler {
+    /**
+     * Upper bound of adaptive poll interval
+     */
+    public static final long MAX_INTERVAL = DateUtils.DAY_IN_MILLIS;
+    /**
+     * Number of polls per observed interval between new messages
+     */
+    private static final int POLLS_PER_PUBLISH = 2;
+    private static final int PUBLISH_WEIGHT_NEW = 3;
+    private static final int PUBLISH_WEIGHT_TOTAL = 10;
+    private static final int HOURS_PER_WEEK = 24 * 7;
+    private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+    private static final Object LOCK = new Object();
+
+    private PollScheduler() {
+    }
+
+    /**
+     * Time of the next poll of the feed
+     *
+     * @param context      Context
+     * @param url          URL-address of the feed
+     * @param lastPollTime Time of the last poll, milliseconds since epoch
+     * @param minInterval  Poll interval set by user, milliseconds
+     * @return Time of the next poll, milliseconds since epoch
+     */
+    public static long getNextPollTime(@NonNull Context context, @NonNull String url,
+            long lastPollTime, long minInterval) {
+        String key = UrlHelper.normalize(url);
+        long maxInterval = Math.max(minInterval, MAX_INTERVAL);
+        long time = lastPollTime + getPollInterval(context, key, minInterval, maxInterval);
+        long expirationTime = FeedPreferences.getExpirationTime(context, key);
+        if (expirationTime > time) {
+            time = Math.min(expirationTime, lastPollTime + maxInterval);
+        }
+        return skip(time, FeedPreferences.getPollHints(context, key));
+    }
+
+    /**
+     * Record loaded feed
+     *
+     * @param context         Context
+     * @param url             URL-address of the feed
+     * @param hints           Channel hints or {@code null} if the feed wasn't modified
+     * @param freshness       Freshness lifetime of the response, milliseconds
+     * @param newMessageCount Number of messages that weren't known before
+     *                        or {@link Constants#NOT_DEFINED} if the feed loaded first time
+     */
+    static void onFeedLoaded(@NonNull Context context, @NonNull String url,
+            @Nullable PollHints hints, long freshness, int newMessageCount) {
+        String key = UrlHelper.normalize(url);
+        long time = System.currentTimeMillis();
+        synchronized (LOCK) {
+            if (hints != null && !hints.equals(FeedPreferences.getPollHints(context, key))) {
+                FeedPreferences.setPollHints(context, key, hints);
+            }
+            if (freshness > 0L) {
+                FeedPreferences.setExpirationTime(context, key, time + freshness);
+            } else if (FeedPreferences.getExpirationTime(context, key) != Constants.NOT_DEFINED) {
+                FeedPreferences.setExpirationTime(context, key, Constants.NOT_DEFINED);
+            }
+            long publishTime = FeedPreferences.getPublishTime(context, key);
+            if (publishTime == Constants.NOT_DEFINED) {
+                FeedPreferences.setPublishStats(context, key, Constants.NOT_DEFINED, time);
+            } else if (newMessageCount > 0) {
+                long sample = Math.max(0L, time - publishTime) / newMessageCount;
+                long interval = FeedPreferences.getPublishInterval(context, key);
+                if (interval == Constants.NOT_DEFINED) {
+                    interval = sample;
+                } else {
+                    // Exponentially weighted moving average
+                    interval = (sample * PUBLISH_WEIGHT_NEW +
+                            interval * (PUBLISH_WEIGHT_TOTAL - PUBLISH_WEIGHT_NEW)) /
+                            PUBLISH_WEIGHT_TOTAL;
+                }
+                FeedPreferences.setPublishStats(context, key, interval, time);
+            }
+        }
+    }
+
+    private static long getPollInterval(@NonNull Context context, @NonNull String key,
+            long minInterval, long maxInterval) {
+        long interval = minInterval;
+        long publishInterval = FeedPreferences.getPublishInterval(context, key);
+        if (publishInterval != Constants.NOT_DEFINED) {
+            // Quiet feed stretches its interval even before the next message is observed
+            long quietTime = System.currentTimeMillis() - FeedPreferences.getPublishTime(context, key);
+            interval = Math.max(interval,
+                    Math.max(publishInterval, quietTime) / POLLS_PER_PUBLISH);
+        }
+        PollHints hints = FeedPreferences.getPollHints(context, key);
+        interval = Math.max(interval, hints.getTimeToLive());
+        interval = Math.max(interval, hints.getUpdateInterval());
+        return Math.min(interval, maxInterval);
+    }
+
+    /**
+     * Postpone specified time to the first hour that isn't skipped
+     */
+    private static long skip(long time, @NonNull PollHints hints) {
+        int skipHours = hints.getSkipHours();
+        int skipDays = hints.getSkipDays();
+        if (skipHours == 0 && skipDays == 0) {
+            return time;
+        }
+        Calendar calendar = Calendar.getInstance(GMT);
+        calendar.setTimeInMillis(time);
+        for (int i = 0; i < HOURS_PER_WEEK; i++) {
+            int hour = calendar.get(Calendar.HOUR_OF_DAY);
+            int day = calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+            if ((skipHours & (1 << hour)) == 0 && (skipDays & (1 << day)) == 0) {
+                return i == 0 ? time : calendar.getTimeInMillis();
+            }
+            if (i == 0) {
+                calendar.set(Calendar.MINUTE, 0);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+            }
+            calendar.add(Calendar.HOUR_OF_DAY, 1);
+        }
+        // Everything is skipped, hints are meaningless
+        return time;
+    }
+}
@@ -25,10 +25,11 @@ package com.budiyev.rssreader.model;
 
 import android.content.Context;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
-import com.budiyev.rssreader.helper.CollectionsHelper;
 import com.budiyev.rssreader.helper.ThreadHelper;
 import com.budiyev.rssreader.helper.UrlHelper;
 import com.budiyev.rssreader.helper.WakeLockHelper;
@@ -37,26 +38,38 @@ import com.budiyev.rssreader.model.callback.InfoAddCallback;
 import com.budiyev.rssreader.model.callback.InfoDeleteCallback;
 import com.budiyev.rssreader.model.callback.InfoListCallback;
 import com.budiyev.rssreader.model.callback.InfoLoadCallback;
+import com.budiyev.rssreader.model.callback.RefreshCallback;
 import com.budiyev.rssreader.model.data.Feed;
 import com.budiyev.rssreader.model.data.FeedInfo;
-import com.budiyev.rssreader.model.data.Message;
+import com.budiyev.rssreader.model.data.RefreshStats;
 import com.budiyev.rssreader.model.preferences.Constants;
 import com.budiyev.rssreader.model.preferences.Preferences;
 import com.budiyev.rssreader.widget.MessageWidgetProvider;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 public final class Provider {
+    /**
+     * Maximum number of feeds fetched at the same time by {@link #refreshAll}
+     */
+    public static final int MAX_PARALLEL_FETCHES = ThreadHelper.FETCH_THREADS_COUNT;
     private static final String WAKE_LOCK_TAG = Provider.class.getName();
-
-    private static final CollectionsHelper.SearchCondition<Message> MESSAGE_SEARCH_CONDITION =
-            new CollectionsHelper.SearchCondition<Message>() {
-                @Override
-                public boolean test(Message item, Message candidate) {
-                    return Objects.equals(item, candidate);
-                }
-            };
+    private static final long FETCH_REUSE_TIME = 5000L;
+    private static final int PREPARED_MESSAGES_COUNT = 10;
+    private static final int PREFETCHED_MESSAGES_COUNT = 10;
+    private static final ConcurrentMap<String, FeedFetch> FEED_FETCHES =
+            new ConcurrentHashMap<>();
 
     private Provider() {
     }
@@ -79,8 +92,30 @@ public final class Provider {
         ThreadHelper.runOnWorkerThread(new WidgetFeedUpdateAction(context, widgetId, useWakeLock));
     }
 
-    public static void loadInfo(@NonNull String url, @NonNull InfoLoadCallback callback) {
-        ThreadHelper.runOnWorkerThread(new LoadInfoAction(url, callback));
+    /**
+     * Refresh all subscribed feeds in parallel
+     * <br>
+     * Feeds are fetched on fetch threads, see {@link ThreadHelper#runOnFetchThread(Runnable)},
+     * so worker threads stay free for the UI,
+     * at most {@link #MAX_PARALLEL_FETCHES} feeds are fetched at the same time,
+     * feeds of the same host are spread over the queue and limited by
+     * {@link com.budiyev.rssreader.model.fetch.Fetcher#MAX_CONNECTIONS_PER_HOST}
+     *
+     * @param context  Context
+     * @param callback Progress callback
+     * @return Delegate to cancel the refresh
+     */
+    @NonNull
+    public static RefreshDelegate refreshAll(@NonNull Context context,
+            @NonNull RefreshCallback callback) {
+        RefreshAllAction refreshAction = new RefreshAllAction(context, callback);
+        ThreadHelper.runOnWorkerThread(refreshAction);
+        return refreshAction.mDelegate;
+    }
+
+    public static void loadInfo(@NonNull Context context, @NonNull String url,
+            @NonNull InfoLoadCallback callback) {
+        ThreadHelper.runOnWorkerThread(new LoadInfoAction(context, url, callback));
     }
 
     public static void insertInfo(@NonNull Context context, @NonNull FeedInfo info, int position,
@@ -104,6 +139,66 @@ public final class Provider {
         ThreadHelper.runOnWorkerThread(new SaveInfoListAction(context, infoList));
     }
 
+    /**
+     * Fetch feed and save it to the repository
+     * <br>
+     * Concurrent fetches of the same feed are merged into one, callers that arrive while
+     * the feed is being fetched, or shortly after it was fetched, receive the same result.
+     * Fetch is skipped if {@link FailureTracker} doesn't allow it at the moment.
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     * @return Completed fetch
+     */
+    @NonNull
+    private static FeedFetch fetchFeed(@NonNull Context context, @NonNull String url) {
+        String key = UrlHelper.normalize(url);
+        FeedFetch fetch = new FeedFetch();
+        for (; ; ) {
+            FeedFetch current = FEED_FETCHES.get(key);
+            if (current != null) {
+                if (current.isReusable()) {
+                    current.await();
+                    return current;
+                }
+                if (FEED_FETCHES.replace(key, current, fetch)) {
+                    break;
+                }
+            } else if (FEED_FETCHES.putIfAbsent(key, fetch) == null) {
+                break;
+            }
+        }
+        try {
+            if (!FailureTracker.acquireFetch(context, url)) {
+                fetch.mSkipped = true;
+                return fetch;
+            }
+            Feed cachedFeed = Repository.getFeed(context, url);
+            Feed feed = Loader.loadFeed(context, url);
+            fetch.mModified = feed != null && feed != cachedFeed;
+            fetch.mFeed = feed;
+        } finally {
+            if (fetch.mFeed == null) {
+                FEED_FETCHES.remove(key, fetch);
+            }
+            fetch.complete();
+        }
+        return fetch;
+    }
+
+    /**
+     * Render spans of the first messages in parallel, to not parse them on main thread,
+     * returns as soon as the first screenful of messages is ready, the next one is rendered
+     * in background, spans of other messages are parsed when they are shown
+     */
+    @Nullable
+    private static Feed prepareSpans(@Nullable Feed feed) {
+        if (feed != null) {
+            SpanRenderer.render(feed, PREPARED_MESSAGES_COUNT, PREFETCHED_MESSAGES_COUNT);
+        }
+        return feed;
+    }
+
     public static class InfoDeleteDelegate {
         private final DeleteInfoAction mAction;
 
@@ -121,6 +216,61 @@ public final class Provider {
         }
     }
 
+    public static class RefreshDelegate {
+        private final RefreshAllAction mAction;
+
+        private RefreshDelegate(@NonNull RefreshAllAction action) {
+            mAction = action;
+        }
+
+        /**
+         * Cancel refresh, feeds that are being fetched at the moment will be completed
+         */
+        public void cancel() {
+            mAction.mCancelled = true;
+        }
+    }
+
+    private static final class FeedFetch {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile Feed mFeed;
+        private volatile boolean mModified;
+        private volatile boolean mSkipped;
+        private volatile long mCompleteTime;
+
+        /**
+         * Whether if this fetch is still in progress or has been completed successfully
+         * not later than {@link #FETCH_REUSE_TIME} ago
+         */
+        private boolean isReusable() {
+            if (mLatch.getCount() != 0) {
+                return true;
+            }
+            return mFeed != null &&
+                    SystemClock.elapsedRealtime() - mCompleteTime < FETCH_REUSE_TIME;
+        }
+
+        private void complete() {
+            mCompleteTime = SystemClock.elapsedRealtime();
+            mLatch.countDown();
+        }
+
+        private void await() {
+            boolean interrupted = false;
+            for (; ; ) {
+                try {
+                    mLatch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     private static class LoadFeedAction implements Runnable {
         private final Context mContext;
         private final String mUrl;
@@ -135,7 +285,7 @@ public final class Provider {
 
         @Override
         public void run() {
-            mCallback.onFeedLoaded(Repository.getFeed(mContext, mUrl));
+            mCallback.onFeedLoaded(prepareSpans(Repository.getFeed(mContext, mUrl)));
         }
     }
 
@@ -153,11 +303,7 @@ public final class Provider {
 
         @Override
         public void run() {
-            Feed feed = Loader.loadFeed(mUrl);
-            if (feed != null) {
-                Repository.setFeed(mContext, mUrl, feed);
-            }
-            mCallback.onFeedUpdated(feed);
+            mCallback.onFeedUpdated(prepareSpans(fetchFeed(mContext, mUrl).mFeed));
         }
     }
 
@@ -187,38 +333,38 @@ public final class Provider {
             Feed feed = Repository.getFeed(mContext, url);
             String guid = Preferences.getGuid(mContext, mWidgetId);
             if (feed == null || guid == null) {
-                feed = Loader.loadFeed(url);
+                feed = fetchFeed(mContext, url).mFeed;
                 if (feed != null && !feed.getMessages().isEmpty()) {
-                    setFirstMessage(feed, url);
+                    setFirstMessage(feed);
                 }
             } else {
                 int position = Preferences.getPosition(mContext, mWidgetId);
-                Feed updateFeed = Loader.loadFeed(url);
+                Feed updateFeed = fetchFeed(mContext, url).mFeed;
                 if (updateFeed != null) {
                     if (position == Constants.NOT_DEFINED || position == 0) {
-                        setFirstMessage(updateFeed, url);
+                        setFirstMessage(updateFeed);
                     } else {
-                        int updatePosition = CollectionsHelper
-                                .search(updateFeed.getMessages(), feed.getMessages().get(position),
-                                        MESSAGE_SEARCH_CONDITION, position, 4, -1);
+                        int updatePosition = updateFeed.indexOf(guid);
                         if (updatePosition < 0) {
-                            setFirstMessage(updateFeed, url);
+                            setFirstMessage(updateFeed);
                         } else {
-                            Repository.setFeed(mContext, url, updateFeed);
                             Preferences.setPosition(mContext, mWidgetId, updatePosition);
-                            Preferences.setGuid(mContext, mWidgetId,
-                                    updateFeed.getMessages().get(updatePosition).getGuid());
                         }
                     }
                 }
             }
             Preferences.setUpdateTime(mContext, mWidgetId, System.currentTimeMillis());
+            Feed currentFeed = Repository.getFeed(mContext, url);
+            if (currentFeed != null) {
+                // Widget is updated on main thread
+                currentFeed.prepareSpans(
+                        Math.max(Preferences.getPosition(mContext, mWidgetId), 0), 1);
+            }
             sendUpdateIntent();
             WakeLockHelper.releaseWakeLock(wakeLock);
         }
 
-        private void setFirstMessage(@NonNull Feed feed, @NonNull String url) {
-            Repository.setFeed(mContext, url, feed);
+        private void setFirstMessage(@NonNull Feed feed) {
             Preferences.setPosition(mContext, mWidgetId, 0);
             Preferences.setGuid(mContext, mWidgetId, feed.getMessages().get(0).getGuid());
         }
@@ -230,18 +376,167 @@ public final class Provider {
         }
     }
 
+    private static class RefreshAllAction implements Runnable {
+        private final Context mContext;
+        private final RefreshCallback mCallback;
+        private final RefreshDelegate mDelegate;
+        private volatile boolean mCancelled;
+        private long mStartTime;
+        private int mTotal;
+        private int mUpdated;
+        private int mNotModified;
+        private int mFailed;
+        private int mSkipped;
+
+        private RefreshAllAction(@NonNull Context context, @NonNull RefreshCallback callback) {
+            mContext = context;
+            mCallback = callback;
+            mDelegate = new RefreshDelegate(this);
+        }
+
+        @Override
+        public void run() {
+            List<String> urls = getUrls();
+            mStartTime = SystemClock.elapsedRealtime();
+            synchronized (this) {
+                mTotal = urls.size();
+            }
+            if (urls.isEmpty()) {
+                mCallback.onRefreshFinished(getStats());
+                return;
+            }
+            // Fetch threads limit the number of parallel fetches, nothing waits here
+            for (String url : urls) {
+                ThreadHelper.runOnFetchThread(new RefreshFeedAction(this, url));
+            }
+        }
+
+        /**
+         * Subscribed feed addresses, interleaved by host, to not wait for the same host
+         * while other hosts can be fetched
+         */
+        @NonNull
+        private List<String> getUrls() {
+            List<FeedInfo> infoList = Repository.getInfoList(mContext);
+            if (infoList == null) {
+                return Collections.emptyList();
+            }
+            Map<String, Deque<String>> hosts = new LinkedHashMap<>();
+            Set<String> uniqueUrls = new HashSet<>();
+            int count = 0;
+            for (FeedInfo info : infoList) {
+                String url = info.getAddress();
+                if (url == null) {
+                    continue;
+                }
+                url = UrlHelper.validateScheme(url);
+                if (!uniqueUrls.add(url)) {
+                    continue;
+                }
+                String host = UrlHelper.getHost(url);
+                Deque<String> hostUrls = hosts.get(host);
+                if (hostUrls == null) {
+                    hostUrls = new ArrayDeque<>();
+                    hosts.put(host, hostUrls);
+                }
+                hostUrls.add(url);
+                count++;
+            }
+            List<String> urls = new ArrayList<>(count);
+            while (urls.size() < count) {
+                for (Deque<String> hostUrls : hosts.values()) {
+                    String url = hostUrls.poll();
+                    if (url != null) {
+                        urls.add(url);
+                    }
+                }
+            }
+            return urls;
+        }
+
+        private void onFeedRefreshed(@Nullable Feed feed, boolean modified) {
+            RefreshStats stats;
+            synchronized (this) {
+                if (feed == null) {
+                    mFailed++;
+                } else if (modified) {
+                    mUpdated++;
+                } else {
+                    mNotModified++;
+                }
+                stats = getStats();
+            }
+            publish(stats);
+        }
+
+        private void onSkipped(int count) {
+            RefreshStats stats;
+            synchronized (this) {
+                mSkipped += count;
+                stats = getStats();
+            }
+            publish(stats);
+        }
+
+        private void publish(@NonNull RefreshStats stats) {
+            mCallback.onRefreshProgress(stats);
+            if (stats.isFinished()) {
+                mCallback.onRefreshFinished(stats);
+            }
+        }
+
+        @NonNull
+        private synchronized RefreshStats getStats() {
+            return new RefreshStats(mTotal, mUpdated, mNotModified, mFailed, mSkipped,
+                    SystemClock.elapsedRealtime() - mStartTime);
+        }
+    }
+
+    private static class RefreshFeedAction implements Runnable {
+        private final RefreshAllAction mRefreshAction;
+        private final String mUrl;
+
+        private RefreshFeedAction(@NonNull RefreshAllAction refreshAction, @NonNull String url) {
+            mRefreshAction = refreshAction;
+            mUrl = url;
+        }
+
+        @Override
+        public void run() {
+            if (mRefreshAction.mCancelled) {
+                mRefreshAction.onSkipped(1);
+                return;
+            }
+            FeedFetch fetch = null;
+            try {
+                fetch = fetchFeed(mRefreshAction.mContext, mUrl);
+            } finally {
+                if (fetch == null) {
+                    mRefreshAction.onFeedRefreshed(null, false);
+                } else if (fetch.mSkipped) {
+                    mRefreshAction.onSkipped(1);
+                } else {
+                    mRefreshAction.onFeedRefreshed(fetch.mFeed, fetch.mModified);
+                }
+            }
+        }
+    }
+
     private static class LoadInfoAction implements Runnable {
+        private final Context mContext;
         private final String mUrl;
         private final InfoLoadCallback mCallback;
 
-        private LoadInfoAction(@NonNull String url, @NonNull InfoLoadCallback callback) {
+        private LoadInfoAction(@NonNull Context context, @NonNull String url,
+                @NonNull InfoLoadCallback callback) {
+            mContext = context;
             mUrl = url;
             mCallback = callback;
         }
 
         @Override
         public void run() {
-            mCallback.onInfoLoaded(mUrl, Loader.loadInfo(mUrl));
+            mCallback.onInfoLoaded(mUrl, Loader.loadInfo(mContext, mUrl));
         }
     }
 
@@ -261,6 +556,10 @@ public final class Provider {
 
         @Override
         public void run() {
+            String url = mInfo.getAddress();
+            if (url != null) {
+                FailureTracker.reset(mContext, url);
+            }
             mCallback.onInfoInserted(Repository.insertInfo(mContext, mInfo, mPosition), mInfo,
                     mPosition);
         }
@@ -23,84 +23,298 @@
  */
 package com.budiyev.rssreader.model;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.budiyev.rssreader.helper.CsvParser;
+import com.budiyev.rssreader.helper.CsvRow;
 import com.budiyev.rssreader.helper.HashHelper;
-import com.budiyev.rssreader.helper.StringRow;
-import com.budiyev.rssreader.helper.StringTable;
+import com.budiyev.rssreader.helper.SpanCache;
+import com.budiyev.rssreader.helper.ThreadHelper;
 import com.budiyev.rssreader.helper.UrlHelper;
+import com.budiyev.rssreader.model.data.DiskCacheStats;
 import com.budiyev.rssreader.model.data.Feed;
+import com.budiyev.rssreader.model.data.FeedCacheStats;
 import com.budiyev.rssreader.model.data.FeedInfo;
 import com.budiyev.rssreader.model.data.Message;
 import com.budiyev.rssreader.model.preferences.Constants;
+import com.budiyev.rssreader.model.preferences.FeedPreferences;
 import com.budiyev.rssreader.model.preferences.Preferences;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public final class Repository {
     private static final String FEED_FILE_PREFIX = "feed_";
-    private static final Lock FEED_LOCK = new ReentrantLock();
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int FEED_CACHE_MEMORY_FRACTION = 16;
+    private static final int FEED_LOCK_STRIPES = 32;
+    private static final long DISK_CACHE_MAX_SIZE = 32 * 1024 * 1024;
+    private static final long DISK_CACHE_TRIM_INTERVAL = TimeUnit.HOURS.toMillis(1);
+    private static final Lock FEED_CACHE_LOCK = new ReentrantLock();
+    private static final Lock DISK_CACHE_LOCK = new ReentrantLock();
     private static final Lock INFO_LOCK = new ReentrantLock();
-    private static volatile Map<String, Feed> sFeedMap;
+    private static final Lock[] FEED_LOCKS = new Lock[FEED_LOCK_STRIPES];
+    private static final ConcurrentMap<String, FutureTask<Feed>> FEED_LOADS =
+            new ConcurrentHashMap<>();
+    private static final AtomicBoolean DISK_CACHE_TRIM_SCHEDULED = new AtomicBoolean();
+    private static volatile FeedCache sFeedCache;
+    private static volatile DiskCache sDiskCache;
     private static volatile Reference<List<FeedInfo>> sInfoList;
 
+    static {
+        for (int i = 0; i < FEED_LOCK_STRIPES; i++) {
+            FEED_LOCKS[i] = new ReentrantLock();
+        }
+    }
+
     private Repository() {
     }
 
+    /**
+     * Cached feed
+     * <br>
+     * Feeds are loaded from disk in parallel, concurrent requests
+     * of the same feed share one load
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     * @return Feed or {@code null} if it isn't cached
+     */
     @Nullable
     public static Feed getFeed(@NonNull Context context, @NonNull String url) {
-        Map<String, Feed> feedMap = getFeedMap();
+        FeedCache feedCache = getFeedCache(context);
         url = UrlHelper.validateScheme(url);
-        Feed feed;
-        FEED_LOCK.lock();
-        try {
-            feed = feedMap.get(url);
-        } finally {
-            FEED_LOCK.unlock();
+        Feed feed = feedCache.get(url);
+        if (feed != null) {
+            // Feed that is read from memory shouldn't be evicted from disk as unused
+            DiskCache diskCache = sDiskCache;
+            if (diskCache != null) {
+                diskCache.onAccess(getFeedName(url));
+            }
+            return feed;
         }
-        if (feed == null) {
-            FEED_LOCK.lock();
+        FutureTask<Feed> load = new FutureTask<>(new LoadFeedTask(context, url, feedCache));
+        FutureTask<Feed> currentLoad = FEED_LOADS.putIfAbsent(url, load);
+        if (currentLoad == null) {
             try {
-                feed = feedMap.get(url);
-                if (feed == null) {
-                    feed = loadFeed(context, url);
-                    if (feed != null) {
-                        feedMap.put(url, feed);
-                    }
-                }
+                load.run();
             } finally {
-                FEED_LOCK.unlock();
+                FEED_LOADS.remove(url, load);
             }
+            currentLoad = load;
         }
-        return feed;
+        return getResult(currentLoad);
     }
 
-    public static void setFeed(@NonNull Context context, @NonNull String url, @NonNull Feed feed) {
-        Map<String, Feed> feedMap = getFeedMap();
+    /**
+     * Save feed to the history and cache the history
+     * <br>
+     * Validators of the response are stored only when the feed is saved, so that
+     * a conditional request is never answered with a feed that isn't in the history
+     *
+     * @param context      Context
+     * @param url          URL-address of the feed
+     * @param feed         Feed as it is read from the publisher
+     * @param entityTag    {@code ETag} response header
+     * @param lastModified {@code Last-Modified} response header
+     * @return Cached feed, the same as {@link #getFeed(Context, String)} returns, with messages
+     * of the history that publisher doesn't list anymore, see {@link FeedHistory}
+     */
+    @NonNull
+    public static Feed setFeed(@NonNull Context context, @NonNull String url, @NonNull Feed feed,
+            @Nullable String entityTag, @Nullable String lastModified) {
+        FeedCache feedCache = getFeedCache(context);
         url = UrlHelper.validateScheme(url);
-        FEED_LOCK.lock();
+        String key = UrlHelper.normalize(url);
+        Lock lock = getFeedLock(url);
+        lock.lock();
         try {
-            saveFeed(context, url, feed);
-            feedMap.put(url, feed);
+            Feed cachedFeed = feedCache.peek(url);
+            if (cachedFeed == feed) {
+                // Not modified since the last save
+                getDiskCache(context).onAccess(getFeedName(url));
+                FeedPreferences.setValidators(context, key, entityTag, lastModified);
+                return feed;
+            }
+            Feed savedFeed = saveFeed(context, url, feed, cachedFeed, feedCache);
+            if (savedFeed == null) {
+                // Next request shouldn't be conditional, the history is older than the response
+                FeedPreferences.setValidators(context, key, null, null);
+                // Feed may have only new messages, the rest of them is in the history
+                savedFeed = cachedFeed != null ? cachedFeed : feed;
+            } else {
+                FeedPreferences.setValidators(context, key, entityTag, lastModified);
+            }
+            if (savedFeed != cachedFeed) {
+                feedCache.put(url, savedFeed);
+            }
+            return savedFeed;
         } finally {
-            FEED_LOCK.unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keep feed in memory while it is shown, it isn't evicted from the cache until unpinned
+     *
+     * @param context Context
+     * @param owner   Key of the owner, a feed per owner is pinned, the feed that was pinned
+     *                by the owner before is unpinned
+     * @param url     URL-address of the feed or {@code null} to unpin
+     */
+    public static void pinFeed(@NonNull Context context, @NonNull String owner,
+            @Nullable String url) {
+        getFeedCache(context).pin(owner, url == null ? null : UrlHelper.validateScheme(url));
+    }
+
+    /**
+     * Set size budget of in-memory feed cache
+     *
+     * @param context Context
+     * @param maxSize Maximum approximate size of cached feeds, in bytes
+     */
+    public static void setFeedCacheMaxSize(@NonNull Context context, long maxSize) {
+        getFeedCache(context).setMaxSize(maxSize);
+    }
+
+    @NonNull
+    public static FeedCacheStats getFeedCacheStats(@NonNull Context context) {
+        return getFeedCache(context).getStats();
+    }
+
+    /**
+     * Set size budget of disk feed cache, cache is trimmed in background if needed
+     *
+     * @param context Context
+     * @param maxSize Maximum size of cached feeds on disk, in bytes
+     */
+    public static void setDiskCacheMaxSize(@NonNull Context context, long maxSize) {
+        DiskCache diskCache = getDiskCache(context);
+        diskCache.setMaxSize(maxSize);
+        scheduleDiskCacheTrim(context, diskCache);
+    }
+
+    @NonNull
+    public static DiskCacheStats getDiskCacheStats(@NonNull Context context) {
+        return getDiskCache(context).getStats();
+    }
+
+    /**
+     * Delete cached feeds that aren't subscribed or shown in widgets for a while
+     * and least recently used feeds while size of disk cache is greater than the budget
+     * <br>
+     * Called automatically in background after saves, at most once per
+     * {@link #DISK_CACHE_TRIM_INTERVAL} unless the cache is over the budget
+     */
+    public static void trimDiskCache(@NonNull Context context) {
+        DiskCache diskCache = getDiskCache(context);
+        Map<String, String> usedFeeds = getUsedFeeds(context);
+        Set<String> usedUrls = new HashSet<>(usedFeeds.size());
+        for (String url : usedFeeds.values()) {
+            usedUrls.add(UrlHelper.normalize(url));
+        }
+        FeedPreferences.retainFeeds(context, usedUrls);
+        Preferences.removeLegacyFeedState(context);
+        Set<String> usedNames = usedFeeds.keySet();
+        for (String name : diskCache.trim(usedNames)) {
+            Lock lock = getNameLock(name);
+            lock.lock();
+            try {
+                // Could be accessed or written while waiting for the lock
+                if (diskCache.remove(name, usedNames)) {
+                    deleteRecursively(new File(diskCache.getDirectory(), name));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        diskCache.saveIndex();
+    }
+
+    /**
+     * Release memory according to the level, see {@link ComponentCallbacks2#onTrimMemory(int)}
+     * <br>
+     * Called automatically once in-memory feed cache is created
+     */
+    public static void trimMemory(int level) {
+        FeedCache feedCache = sFeedCache;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            if (feedCache != null) {
+                feedCache.trimToSize(0);
+            }
+            SpanCache.trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            if (feedCache != null) {
+                feedCache.trimToSize(feedCache.getMaxSize() / 2);
+            }
+            SpanCache.trimToSize(SpanCache.MAX_SIZE / 2);
+        }
+    }
+
+    /**
+     * Entity tag of the cached feed, received in the {@code ETag} response header
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     * @return Entity tag or {@code null} if the server didn't provide it
+     */
+    @Nullable
+    public static String getEntityTag(@NonNull Context context, @NonNull String url) {
+        return FeedPreferences.getEntityTag(context, UrlHelper.normalize(url));
+    }
+
+    /**
+     * Last modification date of the cached feed, received in the {@code Last-Modified}
+     * response header
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     * @return Last modification date or {@code null} if the server didn't provide it
+     */
+    @Nullable
+    public static String getLastModified(@NonNull Context context, @NonNull String url) {
+        return FeedPreferences.getLastModified(context, UrlHelper.normalize(url));
+    }
+
+    /**
+     * Delete fetch state of the feed (validators, failures, poll schedule)
+     * if it isn't subscribed or shown in widgets anymore
+     *
+     * @param context Context
+     * @param url     URL-address of the feed
+     */
+    public static void forgetFeed(@NonNull Context context, @NonNull String url) {
+        if (!getUsedFeeds(context).containsKey(getFeedName(UrlHelper.validateScheme(url)))) {
+            FeedPreferences.removeFeed(context, UrlHelper.normalize(url));
         }
     }
 
@@ -159,6 +373,10 @@ public final class Repository {
             }
             infoList.remove(position);
             setInfoList(context, infoList);
+            String url = info.getAddress();
+            if (url != null) {
+                forgetFeed(context, url);
+            }
             return infoList;
         } finally {
             INFO_LOCK.unlock();
@@ -187,46 +405,212 @@ public final class Repository {
     }
 
     @NonNull
-    private static Map<String, Feed> getFeedMap() {
-        Map<String, Feed> map = sFeedMap;
-        if (map == null) {
-            FEED_LOCK.lock();
+    private static FeedCache getFeedCache(@NonNull Context context) {
+        FeedCache cache = sFeedCache;
+        if (cache == null) {
+            FEED_CACHE_LOCK.lock();
+            try {
+                cache = sFeedCache;
+                if (cache == null) {
+                    cache = new FeedCache(
+                            Runtime.getRuntime().maxMemory() / FEED_CACHE_MEMORY_FRACTION);
+                    context.getApplicationContext()
+                            .registerComponentCallbacks(new TrimMemoryCallbacks());
+                    sFeedCache = cache;
+                }
+            } finally {
+                FEED_CACHE_LOCK.unlock();
+            }
+        }
+        return cache;
+    }
+
+    @NonNull
+    private static DiskCache getDiskCache(@NonNull Context context) {
+        DiskCache cache = sDiskCache;
+        if (cache == null) {
+            DISK_CACHE_LOCK.lock();
             try {
-                map = sFeedMap;
-                if (map == null) {
-                    map = new WeakHashMap<>();
-                    sFeedMap = map;
+                cache = sDiskCache;
+                if (cache == null) {
+                    cache = new DiskCache(getCacheDirectory(context), FEED_FILE_PREFIX,
+                            DISK_CACHE_MAX_SIZE);
+                    sDiskCache = cache;
                 }
             } finally {
-                FEED_LOCK.unlock();
+                DISK_CACHE_LOCK.unlock();
             }
         }
-        return map;
+        return cache;
+    }
+
+    /**
+     * Lock of disk operations on the feed, feeds are spread over lock stripes by history name
+     */
+    @NonNull
+    private static Lock getFeedLock(@NonNull String url) {
+        return getNameLock(getFeedName(url));
+    }
+
+    /**
+     * Lock of the feed by name of its history, histories of the feeds that aren't used anymore
+     * are locked by name, their URL-addresses aren't known
+     */
+    @NonNull
+    private static Lock getNameLock(@NonNull String name) {
+        int hash = name.hashCode();
+        hash ^= hash >>> 16;
+        return FEED_LOCKS[hash & (FEED_LOCK_STRIPES - 1)];
     }
 
+    @Nullable
+    private static Feed getResult(@NonNull FutureTask<Feed> load) {
+        boolean interrupted = false;
+        try {
+            for (; ; ) {
+                try {
+                    return load.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Load feed from the history, segments are mapped into memory and messages are decoded
+     * on demand, see {@link FeedHistory}
+     */
     @Nullable
     private static Feed loadFeed(@NonNull Context context, @NonNull String url) {
-        File cacheFile = getCacheFile(context, url);
-        if (!cacheFile.exists()) {
+        File directory = getFeedDirectory(context, url);
+        if (!directory.exists()) {
             return null;
         }
-        try (InputStream inputStream = new FileInputStream(cacheFile)) {
-            return decodeFeed(inputStream);
+        migrateLegacyFeed(directory);
+        Feed feed = FeedHistory.open(directory);
+        if (feed != null) {
+            getDiskCache(context).onAccess(directory.getName());
+        }
+        return feed;
+    }
+
+    /**
+     * Append new messages to the history, history is compacted in background when needed
+     *
+     * @param cachedFeed Cached history of the feed, it is returned if nothing was appended
+     * @return History after the append or {@code null} if it can't be written
+     */
+    @Nullable
+    private static Feed saveFeed(@NonNull Context context, @NonNull String url,
+            @NonNull Feed feed, @Nullable Feed cachedFeed, @NonNull FeedCache feedCache) {
+        DiskCache diskCache = getDiskCache(context);
+        File directory = getFeedDirectory(context, url);
+        migrateLegacyFeed(directory);
+        int result;
+        try {
+            result = FeedHistory.append(directory, feed);
         } catch (IOException e) {
             return null;
+        } finally {
+            diskCache.onWrite(directory.getName());
+            scheduleDiskCacheTrim(context, diskCache);
+        }
+        if (result == FeedHistory.APPEND_NEEDS_COMPACTION) {
+            ThreadHelper.runOnWorkerThread(new CompactAction(directory, url, feedCache, diskCache));
+        }
+        if (result == FeedHistory.APPEND_UNCHANGED && cachedFeed != null) {
+            // Decoded messages of the cached history are kept
+            return cachedFeed;
         }
+        return FeedHistory.open(directory);
     }
 
-    private static void saveFeed(@NonNull Context context, @NonNull String url,
-            @NonNull Feed feed) {
-        File cacheFile = getCacheFile(context, url);
-        if (cacheFile.exists()) {
-            //noinspection ResultOfMethodCallIgnored
-            cacheFile.delete();
+    private static void scheduleDiskCacheTrim(@NonNull Context context,
+            @NonNull DiskCache diskCache) {
+        if ((diskCache.isOverBudget() || System.currentTimeMillis() - diskCache.getTrimTime() >
+                DISK_CACHE_TRIM_INTERVAL) && DISK_CACHE_TRIM_SCHEDULED.compareAndSet(false, true)) {
+            ThreadHelper.runOnWorkerThread(
+                    new TrimDiskCacheAction(context.getApplicationContext()));
+        }
+    }
+
+    /**
+     * Names of histories of the feeds that are subscribed or shown in widgets,
+     * mapped to URL-addresses of the feeds
+     */
+    @NonNull
+    private static Map<String, String> getUsedFeeds(@NonNull Context context) {
+        Map<String, String> usedFeeds = new HashMap<>();
+        List<FeedInfo> infoList = getInfoList(context);
+        if (infoList != null) {
+            for (FeedInfo info : infoList) {
+                String url = info.getAddress();
+                if (url != null) {
+                    url = UrlHelper.validateScheme(url);
+                    usedFeeds.put(getFeedName(url), url);
+                }
+            }
+        }
+        for (String url : Preferences.getUrls(context)) {
+            url = UrlHelper.validateScheme(url);
+            usedFeeds.put(getFeedName(url), url);
+        }
+        return usedFeeds;
+    }
+
+    private static void deleteRecursively(@NonNull File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteRecursively(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Move feed from the legacy cache file of the binary or CSV format into the history,
+     * cache file had the same path as the history directory
+     */
+    private static void migrateLegacyFeed(@NonNull File directory) {
+        if (!directory.isFile()) {
+            return;
+        }
+        File legacyFile = new File(directory.getPath() + TEMP_FILE_SUFFIX);
+        if (!directory.renameTo(legacyFile)) {
+            return;
         }
-        try (OutputStream outputStream = new FileOutputStream(cacheFile)) {
-            encodeFeed(outputStream, feed);
+        Feed feed = null;
+        try (FileInputStream inputStream = new FileInputStream(legacyFile);
+                FileChannel channel = inputStream.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (FeedCodec.isVersion(buffer, FeedCodec.VERSION_SNAPSHOT)) {
+                feed = FeedCodec.openSnapshot(buffer);
+            } else {
+                feed = decodeLegacyFeed(inputStream);
+            }
+            if (feed != null) {
+                FeedHistory.append(directory, feed);
+            }
         } catch (IOException ignored) {
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            legacyFile.delete();
         }
     }
 
@@ -239,54 +623,157 @@ public final class Repository {
         return cacheDir;
     }
 
+    /**
+     * Directory of the feed history, see {@link FeedHistory}
+     */
     @NonNull
-    private static File getCacheFile(@NonNull Context context, @NonNull String url) {
-        return new File(getCacheDirectory(context),
-                FEED_FILE_PREFIX + HashHelper.generateSHA256(url));
+    private static File getFeedDirectory(@NonNull Context context, @NonNull String url) {
+        return new File(getDiskCache(context).getDirectory(), getFeedName(url));
     }
 
-    private static void encodeFeed(@NonNull OutputStream outputStream, @NonNull Feed feed) {
-        StringTable table = new StringTable();
-        table.add(feed.getAddress(), feed.getTitle(), feed.getDescription(), feed.getLink(),
-                feed.getLanguage(), feed.getCopyright(), feed.getPublishDate());
-        for (Message message : feed.getMessages()) {
-            table.add(message.getTitle(), message.getDescription(), message.getLink(),
-                    message.getAuthor(), message.getGuid());
-        }
-        CsvParser.encode(table, outputStream, Constants.CSV_SEPARATOR, Constants.CSV_CHARSET);
+    @NonNull
+    private static String getFeedName(@NonNull String url) {
+        return FEED_FILE_PREFIX + HashHelper.generateSHA256(url);
     }
 
+    /**
+     * Decode feed of the legacy CSV format
+     */
     @Nullable
-    private static Feed decodeFeed(@NonNull InputStream inputStream) {
-        StringTable table =
-                CsvParser.parse(inputStream, Constants.CSV_SEPARATOR, Constants.CSV_CHARSET);
-        if (table == null) {
+    private static Feed decodeLegacyFeed(@NonNull InputStream inputStream) {
+        LegacyFeedDecoder decoder = new LegacyFeedDecoder();
+        if (!CsvParser.parse(inputStream, Constants.CSV_SEPARATOR, Constants.CSV_CHARSET,
+                decoder)) {
             return null;
         }
-        StringRow infoRow = table.row(0);
-        if (infoRow.size() != Constants.COLUMNS_COUNT_INFO) {
-            return null;
+        return decoder.mFeed;
+    }
+
+    /**
+     * First row is feed info, following rows are messages
+     */
+    private static final class LegacyFeedDecoder implements CsvParser.RowVisitor {
+        private Feed mFeed;
+
+        @Override
+        public boolean visit(@NonNull CsvRow row) {
+            Feed feed = mFeed;
+            if (feed == null) {
+                FeedInfo info = Preferences.readInfo(row);
+                if (info == null) {
+                    return false;
+                }
+                mFeed = new Feed(info);
+                return true;
+            }
+            if (row.size() == Constants.COLUMNS_COUNT_MESSAGE) {
+                feed.getMessages().add(
+                        new Message(Preferences.getCell(row, Constants.COLUMN_MESSAGE_TITLE),
+                                Preferences.getCell(row, Constants.COLUMN_MESSAGE_DESCRIPTION),
+                                Preferences.getCell(row, Constants.COLUMN_MESSAGE_LINK),
+                                Preferences.getCell(row, Constants.COLUMN_MESSAGE_AUTHOR),
+                                Preferences.getCell(row, Constants.COLUMN_MESSAGE_GUID)));
+            }
+            return true;
         }
-        Feed feed = new Feed(Preferences.getCell(infoRow, Constants.COLUMN_INFO_ADDRESS),
-                Preferences.getCell(infoRow, Constants.COLUMN_INFO_TITLE),
-                Preferences.getCell(infoRow, Constants.COLUMN_INFO_DESCRIPTION),
-                Preferences.getCell(infoRow, Constants.COLUMN_INFO_LINK),
-                Preferences.getCell(infoRow, Constants.COLUMN_INFO_LANGUAGE),
-                Preferences.getCell(infoRow, Constants.COLUMN_INFO_COPYRIGHT),
-                Preferences.getCell(infoRow, Constants.COLUMN_INFO_PUBLISH_DATE));
-        List<Message> messages = feed.getMessages();
-        for (int i = 1, s = table.size(); i < s; i++) {
-            StringRow messageRow = table.row(i);
-            if (messageRow.size() != Constants.COLUMNS_COUNT_MESSAGE) {
-                continue;
+    }
+
+    private static final class TrimMemoryCallbacks implements ComponentCallbacks2 {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
+    private static final class TrimDiskCacheAction implements Runnable {
+        private final Context mContext;
+
+        private TrimDiskCacheAction(@NonNull Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public void run() {
+            try {
+                trimDiskCache(mContext);
+            } finally {
+                DISK_CACHE_TRIM_SCHEDULED.set(false);
+            }
+        }
+    }
+
+    private static final class CompactAction implements Runnable {
+        private final File mDirectory;
+        private final String mUrl;
+        private final FeedCache mFeedCache;
+        private final DiskCache mDiskCache;
+
+        private CompactAction(@NonNull File directory, @NonNull String url,
+                @NonNull FeedCache feedCache, @NonNull DiskCache diskCache) {
+            mDirectory = directory;
+            mUrl = url;
+            mFeedCache = feedCache;
+            mDiskCache = diskCache;
+        }
+
+        @Override
+        public void run() {
+            Lock lock = getFeedLock(mUrl);
+            lock.lock();
+            try {
+                // Could be compacted already by the previous action
+                if (FeedHistory.needsCompaction(mDirectory) && FeedHistory.compact(mDirectory)) {
+                    // Dropped messages shouldn't be saved again from the cached feed
+                    mFeedCache.remove(mUrl);
+                }
+                mDiskCache.onWrite(mDirectory.getName());
+            } catch (IOException ignored) {
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class LoadFeedTask implements Callable<Feed> {
+        private final Context mContext;
+        private final String mUrl;
+        private final FeedCache mFeedCache;
+
+        private LoadFeedTask(@NonNull Context context, @NonNull String url,
+                @NonNull FeedCache feedCache) {
+            mContext = context;
+            mUrl = url;
+            mFeedCache = feedCache;
+        }
+
+        @Override
+        public Feed call() {
+            Lock lock = getFeedLock(mUrl);
+            lock.lock();
+            try {
+                // Could be saved while waiting for the lock
+                Feed feed = mFeedCache.peek(mUrl);
+                if (feed == null) {
+                    long start = SystemClock.elapsedRealtime();
+                    feed = loadFeed(mContext, mUrl);
+                    if (feed != null) {
+                        mFeedCache.onLoad(SystemClock.elapsedRealtime() - start);
+                        mFeedCache.put(mUrl, feed);
+                    }
+                }
+                return feed;
+            } finally {
+                lock.unlock();
             }
-            messages.add(
-                    new Message(Preferences.getCell(messageRow, Constants.COLUMN_MESSAGE_TITLE),
-                            Preferences.getCell(messageRow, Constants.COLUMN_MESSAGE_DESCRIPTION),
-                            Preferences.getCell(messageRow, Constants.COLUMN_MESSAGE_LINK),
-                            Preferences.getCell(messageRow, Constants.COLUMN_MESSAGE_AUTHOR),
-                            Preferences.getCell(messageRow, Constants.COLUMN_MESSAGE_GUID)));
         }
-        return feed;
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.budiyev.rssreader.helper.ThreadHelper;
+import com.budiyev.rssreader.model.data.Feed;
+import com.budiyev.rssreader.model.data.Message;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel rendering of spans of the first messages on computation threads
+ * <br>
+ * Messages are split into chunks, threads take chunks in order, one by one,
+ * so faster threads take more chunks and messages at the top are rendered first.
+ * Spans of the other messages are parsed on first access, see {@link Message#prepareSpans()}
+ */
+final class SpanRenderer {
+    private static final int CHUNK_SIZE = 4;
+
+    private SpanRenderer() {
+    }
+
+    /**
+     * Render spans of the feed and its first messages, calling thread takes part in rendering
+     * and returns as soon as the first {@code readyCount} messages are rendered,
+     * the following {@code prefetchCount} messages are rendered in background
+     *
+     * @param feed          Feed
+     * @param readyCount    Number of messages to render before return
+     * @param prefetchCount Number of messages to render in background after them
+     */
+    @WorkerThread
+    static void render(@NonNull Feed feed, int readyCount, int prefetchCount) {
+        feed.prepareSpans();
+        List<Message> messages = feed.getMessages();
+        int size = Math.min(messages.size(), readyCount + prefetchCount);
+        if (size == 0) {
+            return;
+        }
+        RenderTask task = new RenderTask(messages, size, Math.min(readyCount, size));
+        int helpers = Math.min(ThreadHelper.getComputationThreadsCount(), task.mChunkCount - 1);
+        for (int i = 0; i < helpers; i++) {
+            ThreadHelper.runOnComputationThread(task);
+        }
+        task.renderReadyChunks();
+        task.awaitReady();
+    }
+
+    private static final class RenderTask implements Runnable {
+        private final List<Message> mMessages;
+        private final int mSize;
+        private final int mChunkCount;
+        private final int mReadyChunkCount;
+        private final AtomicInteger mNextChunk = new AtomicInteger();
+        private final CountDownLatch mReadyLatch;
+
+        private RenderTask(@NonNull List<Message> messages, int size, int readyCount) {
+            mMessages = messages;
+            mSize = size;
+            mChunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            mReadyChunkCount = (readyCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            mReadyLatch = new CountDownLatch(mReadyChunkCount);
+        }
+
+        @Override
+        public void run() {
+            for (int chunk = mNextChunk.getAndIncrement(); chunk < mChunkCount;
+                    chunk = mNextChunk.getAndIncrement()) {
+                renderChunk(chunk);
+            }
+        }
+
+        /**
+         * Take chunks while there are chunks of the first messages left
+         */
+        private void renderReadyChunks() {
+            for (; ; ) {
+                int chunk = mNextChunk.get();
+                if (chunk >= mReadyChunkCount) {
+                    break;
+                }
+                if (mNextChunk.compareAndSet(chunk, chunk + 1)) {
+                    renderChunk(chunk);
+                }
+            }
+        }
+
+        private void renderChunk(int chunk) {
+            try {
+                for (int i = chunk * CHUNK_SIZE, e = Math.min(i + CHUNK_SIZE, mSize); i < e;
+                        i++) {
+                    mMessages.get(i).prepareSpans();
+                }
+            } finally {
+                if (chunk < mReadyChunkCount) {
+                    mReadyLatch.countDown();
+                }
+            }
+        }
+
+        private void awaitReady() {
+            boolean interrupted = false;
+            for (; ; ) {
+                try {
+                    mReadyLatch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
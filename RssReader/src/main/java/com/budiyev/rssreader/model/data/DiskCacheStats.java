@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.data;
+
+/**
+ * Snapshot of disk feed cache statistics
+ */
+public class DiskCacheStats {
+    private final int mCount;
+    private final long mSize;
+    private final long mMaxSize;
+    private final long mEvictionCount;
+    private final long mOrphanCount;
+    private final long mTrimTime;
+
+    public DiskCacheStats(int count, long size, long maxSize, long evictionCount,
+            long orphanCount, long trimTime) {
+        mCount = count;
+        mSize = size;
+        mMaxSize = maxSize;
+        mEvictionCount = evictionCount;
+        mOrphanCount = orphanCount;
+        mTrimTime = trimTime;
+    }
+
+    /**
+     * Number of cached feeds
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Size of cached feeds on disk, in bytes
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Size budget of the cache, in bytes
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Number of feeds removed to fit the budget
+     */
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Number of removed feeds that weren't subscribed or shown in widgets
+     */
+    public long getOrphanCount() {
+        return mOrphanCount;
+    }
+
+    /**
+     * Time of the last trim or {@code 0} if the cache wasn't trimmed yet
+     */
+    public long getTrimTime() {
+        return mTrimTime;
+    }
+
+    @Override
+    public String toString() {
+        return "DiskCacheStats [count = " + mCount + ", size = " + mSize + ", max size = " +
+                mMaxSize + ", evictions = " + mEvictionCount + ", orphans = " + mOrphanCount +
+                ", trim time = " + mTrimTime + "]";
+    }
+}
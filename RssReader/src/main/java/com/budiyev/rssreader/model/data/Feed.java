@@ -27,22 +27,35 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class Feed extends FeedInfo implements Iterable<Message> {
-    private final List<Message> mMessages = new ArrayList<>();
+    private final List<Message> mMessages;
+    private volatile GuidIndex mGuidIndex;
 
     public Feed(@NonNull FeedInfo feedInfo) {
+        this(feedInfo, new ArrayList<Message>());
+    }
+
+    /**
+     * Feed with specified list of messages, list may be read-only
+     * or may load messages on demand
+     */
+    public Feed(@NonNull FeedInfo feedInfo, @NonNull List<Message> messages) {
         super(feedInfo.getAddress(), feedInfo.getTitle(), feedInfo.getDescription(),
                 feedInfo.getLink(), feedInfo.getLanguage(), feedInfo.getCopyright(),
                 feedInfo.getPublishDate());
+        mMessages = messages;
     }
 
     public Feed(@Nullable String address, @Nullable String title, @Nullable String description,
             @Nullable String link, @Nullable String language, @Nullable String copyright,
             @Nullable String publishDate) {
         super(address, title, description, link, language, copyright, publishDate);
+        mMessages = new ArrayList<>();
     }
 
     @NonNull
@@ -50,6 +63,55 @@ public class Feed extends FeedInfo implements Iterable<Message> {
         return mMessages;
     }
 
+    /**
+     * Parse spans of the feed and of the messages in specified range in advance,
+     * should be called on a worker thread
+     *
+     * @param start Index of the first message
+     * @param count Number of messages
+     * @see Message#prepareSpans()
+     */
+    public void prepareSpans(int start, int count) {
+        prepareSpans();
+        List<Message> messages = mMessages;
+        int end = (int) Math.min((long) start + count, messages.size());
+        for (int i = Math.max(start, 0); i < end; i++) {
+            messages.get(i).prepareSpans();
+        }
+    }
+
+    /**
+     * Position of the message with specified GUID
+     * <br>
+     * Index of GUIDs is built on first call, unless the list of messages is
+     * {@link GuidIndexedList}, it reads all messages, so the first call should be made
+     * on a worker thread
+     *
+     * @param guid GUID
+     * @return Position of the first message with specified GUID or {@code -1} if not found
+     */
+    public int indexOf(@Nullable String guid) {
+        if (guid == null) {
+            return -1;
+        }
+        List<Message> messages = mMessages;
+        if (messages instanceof GuidIndexedList) {
+            return ((GuidIndexedList) messages).indexOfGuid(guid);
+        }
+        GuidIndex guidIndex = mGuidIndex;
+        if (guidIndex == null || guidIndex.mSize != messages.size()) {
+            synchronized (this) {
+                guidIndex = mGuidIndex;
+                if (guidIndex == null || guidIndex.mSize != messages.size()) {
+                    guidIndex = new GuidIndex(messages);
+                    mGuidIndex = guidIndex;
+                }
+            }
+        }
+        Integer index = guidIndex.mIndices.get(guid);
+        return index == null ? -1 : index;
+    }
+
     @Override
     public Iterator<Message> iterator() {
         return mMessages.iterator();
@@ -62,4 +124,33 @@ public class Feed extends FeedInfo implements Iterable<Message> {
                 ", publish date = " + getPublishDate() + ", messages number = " + mMessages.size() +
                 "]";
     }
+
+    /**
+     * List of messages that finds messages by GUID without reading all of them
+     */
+    public interface GuidIndexedList {
+        /**
+         * @return Position of the message with specified GUID or {@code -1} if not found
+         */
+        int indexOfGuid(@NonNull String guid);
+    }
+
+    private static final class GuidIndex {
+        private final Map<String, Integer> mIndices;
+        private final int mSize;
+
+        private GuidIndex(@NonNull List<Message> messages) {
+            int size = messages.size();
+            Map<String, Integer> indices = new HashMap<>(size * 2);
+            // Backwards, so that the first message wins if GUIDs are repeated
+            for (int i = size - 1; i >= 0; i--) {
+                String guid = messages.get(i).getGuid();
+                if (guid != null) {
+                    indices.put(guid, i);
+                }
+            }
+            mIndices = indices;
+            mSize = size;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.data;
+
+/**
+ * Snapshot of in-memory feed cache statistics
+ */
+public class FeedCacheStats {
+    private final int mCount;
+    private final long mSize;
+    private final long mMaxSize;
+    private final long mHitCount;
+    private final long mMissCount;
+    private final long mLoadCount;
+    private final long mLoadTime;
+    private final long mEvictionCount;
+
+    public FeedCacheStats(int count, long size, long maxSize, long hitCount, long missCount,
+            long loadCount, long loadTime, long evictionCount) {
+        mCount = count;
+        mSize = size;
+        mMaxSize = maxSize;
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mLoadCount = loadCount;
+        mLoadTime = loadTime;
+        mEvictionCount = evictionCount;
+    }
+
+    /**
+     * Number of cached feeds
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Approximate size of cached feeds, in bytes
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Size budget of the cache, in bytes
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Number of feeds loaded from disk
+     */
+    public long getLoadCount() {
+        return mLoadCount;
+    }
+
+    /**
+     * Total time spent on loading feeds from disk, in milliseconds
+     */
+    public long getLoadTime() {
+        return mLoadTime;
+    }
+
+    /**
+     * Average time of loading a feed from disk, in milliseconds
+     */
+    public long getAverageLoadTime() {
+        return mLoadCount == 0 ? 0 : mLoadTime / mLoadCount;
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return "FeedCacheStats [count = " + mCount + ", size = " + mSize + ", max size = " +
+                mMaxSize + ", hits = " + mHitCount + ", misses = " + mMissCount + ", loads = " +
+                mLoadCount + ", load time = " + mLoadTime + ", evictions = " + mEvictionCount +
+                "]";
+    }
+}
@@ -26,7 +26,7 @@ package com.budiyev.rssreader.model.data;
 import android.support.annotation.Nullable;
 import android.text.Spanned;
 
-import com.budiyev.rssreader.helper.TextHelper;
+import com.budiyev.rssreader.helper.SpanCache;
 
 import java.util.Objects;
 
@@ -38,8 +38,8 @@ public class FeedInfo {
     private final String mLanguage;
     private final String mCopyright;
     private final String mPublishDate;
-    private final Spanned mTitleSpanned;
-    private final Spanned mDescriptionSpanned;
+    private volatile Spanned mTitleSpanned;
+    private volatile Spanned mDescriptionSpanned;
 
     public FeedInfo(@Nullable String address, @Nullable String title, @Nullable String description,
             @Nullable String link, @Nullable String language, @Nullable String copyright,
@@ -51,16 +51,6 @@ public class FeedInfo {
         mLanguage = language;
         mCopyright = copyright;
         mPublishDate = publishDate;
-        if (title == null) {
-            mTitleSpanned = null;
-        } else {
-            mTitleSpanned = TextHelper.parseHtml(title);
-        }
-        if (description == null) {
-            mDescriptionSpanned = null;
-        } else {
-            mDescriptionSpanned = TextHelper.parseHtml(description);
-        }
     }
 
     @Nullable
@@ -98,14 +88,49 @@ public class FeedInfo {
         return mPublishDate;
     }
 
+    /**
+     * Title parsed as HTML, it is parsed on first access or taken from {@link SpanCache}
+     */
     @Nullable
     public Spanned getTitleSpanned() {
-        return mTitleSpanned;
+        Spanned titleSpanned = mTitleSpanned;
+        if (titleSpanned == null && mTitle != null) {
+            synchronized (this) {
+                titleSpanned = mTitleSpanned;
+                if (titleSpanned == null) {
+                    titleSpanned = SpanCache.parseHtml(mTitle);
+                    mTitleSpanned = titleSpanned;
+                }
+            }
+        }
+        return titleSpanned;
     }
 
+    /**
+     * Description parsed as HTML, it is parsed on first access or taken from {@link SpanCache}
+     */
     @Nullable
     public Spanned getDescriptionSpanned() {
-        return mDescriptionSpanned;
+        Spanned descriptionSpanned = mDescriptionSpanned;
+        if (descriptionSpanned == null && mDescription != null) {
+            synchronized (this) {
+                descriptionSpanned = mDescriptionSpanned;
+                if (descriptionSpanned == null) {
+                    descriptionSpanned = SpanCache.parseHtml(mDescription);
+                    mDescriptionSpanned = descriptionSpanned;
+                }
+            }
+        }
+        return descriptionSpanned;
+    }
+
+    /**
+     * Parse title and description in advance, to not parse them on first access,
+     * should be called on a worker thread
+     */
+    public void prepareSpans() {
+        getTitleSpanned();
+        getDescriptionSpanned();
     }
 
     @Override
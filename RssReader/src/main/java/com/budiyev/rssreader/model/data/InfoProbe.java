@@ -0,0 +1,56 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.data;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Result of feed info probe, see {@link com.budiyev.rssreader.model.Loader#probeInfo}
+ */
+public class InfoProbe {
+    private final FeedInfo mInfo;
+    private final long mBytesRead;
+
+    public InfoProbe(@NonNull FeedInfo info, long bytesRead) {
+        mInfo = info;
+        mBytesRead = bytesRead;
+    }
+
+    @NonNull
+    public FeedInfo getInfo() {
+        return mInfo;
+    }
+
+    /**
+     * Number of response body bytes received from network
+     */
+    public long getBytesRead() {
+        return mBytesRead;
+    }
+
+    @Override
+    public String toString() {
+        return "InfoProbe [info = " + mInfo + ", bytes read = " + mBytesRead + "]";
+    }
+}
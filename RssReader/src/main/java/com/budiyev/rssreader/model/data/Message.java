@@ -26,7 +26,7 @@ package com.budiyev.rssreader.model.data;
 import android.support.annotation.Nullable;
 import android.text.Spanned;
 
-import com.budiyev.rssreader.helper.TextHelper;
+import com.budiyev.rssreader.helper.SpanCache;
 
 import java.util.Objects;
 
@@ -36,8 +36,8 @@ public class Message {
     private final String mLink;
     private final String mAuthor;
     private final String mGuid;
-    private final Spanned mTitleSpanned;
-    private final Spanned mDescriptionSpanned;
+    private volatile Spanned mTitleSpanned;
+    private volatile Spanned mDescriptionSpanned;
 
     public Message(@Nullable String title, @Nullable String description, @Nullable String link,
             @Nullable String author, @Nullable String guid) {
@@ -46,16 +46,6 @@ public class Message {
         mLink = link;
         mAuthor = author;
         mGuid = guid;
-        if (title == null) {
-            mTitleSpanned = null;
-        } else {
-            mTitleSpanned = TextHelper.parseHtml(title);
-        }
-        if (description == null) {
-            mDescriptionSpanned = null;
-        } else {
-            mDescriptionSpanned = TextHelper.parseHtml(description);
-        }
     }
 
     @Nullable
@@ -83,14 +73,49 @@ public class Message {
         return mGuid;
     }
 
+    /**
+     * Title parsed as HTML, it is parsed on first access or taken from {@link SpanCache}
+     */
     @Nullable
     public Spanned getTitleSpanned() {
-        return mTitleSpanned;
+        Spanned titleSpanned = mTitleSpanned;
+        if (titleSpanned == null && mTitle != null) {
+            synchronized (this) {
+                titleSpanned = mTitleSpanned;
+                if (titleSpanned == null) {
+                    titleSpanned = SpanCache.parseHtml(mTitle);
+                    mTitleSpanned = titleSpanned;
+                }
+            }
+        }
+        return titleSpanned;
     }
 
+    /**
+     * Description parsed as HTML, it is parsed on first access or taken from {@link SpanCache}
+     */
     @Nullable
     public Spanned getDescriptionSpanned() {
-        return mDescriptionSpanned;
+        Spanned descriptionSpanned = mDescriptionSpanned;
+        if (descriptionSpanned == null && mDescription != null) {
+            synchronized (this) {
+                descriptionSpanned = mDescriptionSpanned;
+                if (descriptionSpanned == null) {
+                    descriptionSpanned = SpanCache.parseHtml(mDescription);
+                    mDescriptionSpanned = descriptionSpanned;
+                }
+            }
+        }
+        return descriptionSpanned;
+    }
+
+    /**
+     * Parse title and description in advance, to not parse them on first access,
+     * should be called on a worker thread
+     */
+    public void prepareSpans() {
+        getTitleSpanned();
+        getDescriptionSpanned();
     }
 
     @Override
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.data;
+
+import com.budiyev.rssreader.model.preferences.Constants;
+
+/**
+ * Update schedule hints of the feed channel: {@code <ttl>}, {@code <skipHours>},
+ * {@code <skipDays>} and syndication module {@code <sy:updatePeriod>}
+ * with {@code <sy:updateFrequency>}
+ */
+public class PollHints {
+    private final long mTimeToLive;
+    private final long mUpdateInterval;
+    private final int mSkipHours;
+    private final int mSkipDays;
+
+    /**
+     * @param timeToLive     Time to live in milliseconds or {@link Constants#NOT_DEFINED}
+     * @param updateInterval Update interval in milliseconds or {@link Constants#NOT_DEFINED}
+     * @param skipHours      Bit mask of skipped hours, GMT, bit {@code 0} is midnight
+     * @param skipDays       Bit mask of skipped days, bit {@code 0} is
+     *                       {@link java.util.Calendar#SUNDAY}
+     */
+    public PollHints(long timeToLive, long updateInterval, int skipHours, int skipDays) {
+        mTimeToLive = timeToLive;
+        mUpdateInterval = updateInterval;
+        mSkipHours = skipHours;
+        mSkipDays = skipDays;
+    }
+
+    /**
+     * How long the feed may be cached before refreshing, in milliseconds,
+     * or {@link Constants#NOT_DEFINED}
+     */
+    public long getTimeToLive() {
+        return mTimeToLive;
+    }
+
+    /**
+     * How often the feed is updated by publisher, in milliseconds,
+     * or {@link Constants#NOT_DEFINED}
+     */
+    public long getUpdateInterval() {
+        return mUpdateInterval;
+    }
+
+    public int getSkipHours() {
+        return mSkipHours;
+    }
+
+    public int getSkipDays() {
+        return mSkipDays;
+    }
+
+    /**
+     * Whether if there are no hints at all
+     */
+    public boolean isEmpty() {
+        return mTimeToLive == Constants.NOT_DEFINED && mUpdateInterval == Constants.NOT_DEFINED &&
+                mSkipHours == 0 && mSkipDays == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 17;
+        hashCode = 31 * hashCode + (int) (mTimeToLive ^ (mTimeToLive >>> 32));
+        hashCode = 31 * hashCode + (int) (mUpdateInterval ^ (mUpdateInterval >>> 32));
+        hashCode = 31 * hashCode + mSkipHours;
+        hashCode = 31 * hashCode + mSkipDays;
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj instanceof PollHints) {
+            PollHints other = (PollHints) obj;
+            return mTimeToLive == other.mTimeToLive && mUpdateInterval == other.mUpdateInterval &&
+                    mSkipHours == other.mSkipHours && mSkipDays == other.mSkipDays;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PollHints [time to live = " + mTimeToLive + ", update interval = " +
+                mUpdateInterval + ", skip hours = " + Integer.toBinaryString(mSkipHours) +
+                ", skip days = " + Integer.toBinaryString(mSkipDays) + "]";
+    }
+}
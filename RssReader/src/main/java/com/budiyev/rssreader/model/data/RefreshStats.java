@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.data;
+
+/**
+ * Snapshot of refresh progress of all feeds
+ */
+public class RefreshStats {
+    private final int mTotal;
+    private final int mUpdated;
+    private final int mNotModified;
+    private final int mFailed;
+    private final int mSkipped;
+    private final long mElapsedTime;
+
+    public RefreshStats(int total, int updated, int notModified, int failed, int skipped,
+            long elapsedTime) {
+        mTotal = total;
+        mUpdated = updated;
+        mNotModified = notModified;
+        mFailed = failed;
+        mSkipped = skipped;
+        mElapsedTime = elapsedTime;
+    }
+
+    /**
+     * Number of feeds to refresh
+     */
+    public int getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * Number of processed feeds
+     */
+    public int getCompleted() {
+        return mUpdated + mNotModified + mFailed + mSkipped;
+    }
+
+    /**
+     * Number of feeds that have been downloaded and saved
+     */
+    public int getUpdated() {
+        return mUpdated;
+    }
+
+    /**
+     * Number of feeds that haven't been modified since the previous update
+     */
+    public int getNotModified() {
+        return mNotModified;
+    }
+
+    /**
+     * Number of feeds that can't be loaded
+     */
+    public int getFailed() {
+        return mFailed;
+    }
+
+    /**
+     * Number of feeds that haven't been requested because refresh was cancelled
+     */
+    public int getSkipped() {
+        return mSkipped;
+    }
+
+    /**
+     * Time since refresh start in milliseconds
+     */
+    public long getElapsedTime() {
+        return mElapsedTime;
+    }
+
+    public boolean isFinished() {
+        return getCompleted() == mTotal;
+    }
+
+    @Override
+    public String toString() {
+        return "RefreshStats [total = " + mTotal + ", updated = " + mUpdated +
+                ", not modified = " + mNotModified + ", failed = " + mFailed +
+                ", skipped = " + mSkipped +
+                ", elapsed time = " + mElapsedTime + "]";
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.fetch;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Request of {@link Fetcher}
+ * <br>
+ * Request can be cancelled from any thread, see {@link #cancel()}
+ */
+public final class FetchRequest {
+    /**
+     * Default connect timeout in milliseconds
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 15000;
+
+    /**
+     * Default read timeout in milliseconds
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 20000;
+
+    /**
+     * Default overall time limit of request in milliseconds, including waiting for
+     * free connection to the host and reading of response body
+     */
+    public static final long DEFAULT_DEADLINE = 60000L;
+
+    /**
+     * Response body size is not limited
+     */
+    public static final long NO_BYTE_LIMIT = -1L;
+
+    private final String mUrl;
+    private String mEntityTag;
+    private String mLastModified;
+    private int mConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int mReadTimeout = DEFAULT_READ_TIMEOUT;
+    private long mDeadline = DEFAULT_DEADLINE;
+    private long mByteLimit = NO_BYTE_LIMIT;
+    private volatile boolean mCancelled;
+    private volatile HttpURLConnection mConnection;
+
+    public FetchRequest(@NonNull String url) {
+        mUrl = url;
+    }
+
+    @NonNull
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Make request conditional
+     *
+     * @param entityTag    Value for the {@code If-None-Match} header or {@code null}
+     * @param lastModified Value for the {@code If-Modified-Since} header or {@code null}
+     * @return This request
+     */
+    @NonNull
+    public FetchRequest setValidators(@Nullable String entityTag, @Nullable String lastModified) {
+        mEntityTag = entityTag;
+        mLastModified = lastModified;
+        return this;
+    }
+
+    @Nullable
+    public String getEntityTag() {
+        return mEntityTag;
+    }
+
+    @Nullable
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    /**
+     * Connect timeout
+     *
+     * @param connectTimeout Timeout in milliseconds
+     * @return This request
+     */
+    @NonNull
+    public FetchRequest setConnectTimeout(int connectTimeout) {
+        if (connectTimeout <= 0) {
+            throw new IllegalArgumentException();
+        }
+        mConnectTimeout = connectTimeout;
+        return this;
+    }
+
+    public int getConnectTimeout() {
+        return mConnectTimeout;
+    }
+
+    /**
+     * Read timeout, maximum time of waiting for data from the server
+     *
+     * @param readTimeout Timeout in milliseconds
+     * @return This request
+     */
+    @NonNull
+    public FetchRequest setReadTimeout(int readTimeout) {
+        if (readTimeout <= 0) {
+            throw new IllegalArgumentException();
+        }
+        mReadTimeout = readTimeout;
+        return this;
+    }
+
+    public int getReadTimeout() {
+        return mReadTimeout;
+    }
+
+    /**
+     * Overall time limit of request, including waiting for free connection to the host
+     * and reading of response body
+     *
+     * @param deadline Time limit in milliseconds
+     * @return This request
+     */
+    @NonNull
+    public FetchRequest setDeadline(long deadline) {
+        if (deadline <= 0) {
+            throw new IllegalArgumentException();
+        }
+        mDeadline = deadline;
+        return this;
+    }
+
+    public long getDeadline() {
+        return mDeadline;
+    }
+
+    /**
+     * Maximum number of response body bytes to receive from network, reading beyond
+     * the limit fails with {@link ByteLimitExceededException}
+     *
+     * @param byteLimit Limit in bytes or {@link #NO_BYTE_LIMIT}
+     * @return This request
+     */
+    @NonNull
+    public FetchRequest setByteLimit(long byteLimit) {
+        if (byteLimit <= 0 && byteLimit != NO_BYTE_LIMIT) {
+            throw new IllegalArgumentException();
+        }
+        mByteLimit = byteLimit;
+        return this;
+    }
+
+    public long getByteLimit() {
+        return mByteLimit;
+    }
+
+    /**
+     * Cancel request, connection will be closed immediately,
+     * blocked reading will throw {@link java.io.InterruptedIOException}
+     */
+    public void cancel() {
+        mCancelled = true;
+        HttpURLConnection connection = mConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    void attach(@Nullable HttpURLConnection connection) {
+        mConnection = connection;
+        if (connection != null && mCancelled) {
+            connection.disconnect();
+        }
+    }
+}
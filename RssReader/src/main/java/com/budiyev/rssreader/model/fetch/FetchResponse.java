@@ -0,0 +1,324 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.fetch;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.budiyev.rssreader.helper.EncodingHelper;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Response of {@link Fetcher}
+ * <br>
+ * Response must be closed, fully read connection is returned to the pool,
+ * otherwise it is disconnected, see also {@link #abort()}
+ */
+public final class FetchResponse implements Closeable {
+    private static final int DRAIN_LIMIT = 16384;
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_AGE = "Age";
+    private static final String DIRECTIVE_NO_CACHE = "no-cache";
+    private static final String DIRECTIVE_NO_STORE = "no-store";
+    private static final String DIRECTIVE_MAX_AGE = "max-age=";
+    private final FetchRequest mRequest;
+    private final HttpURLConnection mConnection;
+    private final int mCode;
+    private final Fetcher.HostPermits mPermits;
+    private final Future<?> mWatchdog;
+    private final long mDeadline;
+    private final AtomicBoolean mClosed = new AtomicBoolean();
+    private BodyInputStream mBody;
+    private volatile boolean mAborted;
+
+    FetchResponse(@NonNull FetchRequest request, @NonNull HttpURLConnection connection, int code,
+            @NonNull Fetcher.HostPermits permits, @NonNull Future<?> watchdog, long deadline) {
+        mRequest = request;
+        mConnection = connection;
+        mCode = code;
+        mPermits = permits;
+        mWatchdog = watchdog;
+        mDeadline = deadline;
+    }
+
+    /**
+     * HTTP status code
+     */
+    public int getCode() {
+        return mCode;
+    }
+
+    public boolean isSuccessful() {
+        return mCode >= HttpURLConnection.HTTP_OK && mCode < HttpURLConnection.HTTP_MULT_CHOICE;
+    }
+
+    public boolean isNotModified() {
+        return mCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Response header value
+     *
+     * @param name Header name
+     * @return Value or {@code null} if there is no such header
+     */
+    @Nullable
+    public String getHeader(@NonNull String name) {
+        return mConnection.getHeaderField(name);
+    }
+
+    @Nullable
+    public String getContentType() {
+        return getHeader(HEADER_CONTENT_TYPE);
+    }
+
+    /**
+     * How long the response stays fresh, from {@code Cache-Control} or {@code Expires} header
+     *
+     * @return Freshness lifetime in milliseconds, {@code 0} if response isn't fresh
+     * or if freshness isn't specified
+     */
+    public long getFreshnessLifetime() {
+        String cacheControl = getHeader(HEADER_CACHE_CONTROL);
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim();
+                if (directive.equalsIgnoreCase(DIRECTIVE_NO_CACHE) ||
+                        directive.equalsIgnoreCase(DIRECTIVE_NO_STORE)) {
+                    return 0L;
+                } else if (directive.regionMatches(true, 0, DIRECTIVE_MAX_AGE, 0,
+                        DIRECTIVE_MAX_AGE.length())) {
+                    long maxAge = parseSeconds(directive.substring(DIRECTIVE_MAX_AGE.length()));
+                    long age = parseSeconds(getHeader(HEADER_AGE));
+                    return Math.max(0L, maxAge - age) * 1000L;
+                }
+            }
+        }
+        long expiration = mConnection.getExpiration();
+        if (expiration == 0L) {
+            return 0L;
+        }
+        // Relative to server clock
+        long date = mConnection.getDate();
+        if (date == 0L) {
+            date = System.currentTimeMillis();
+        }
+        return Math.max(0L, expiration - date);
+    }
+
+    /**
+     * Decoded response body, can be obtained only once
+     * <br>
+     * Closing of returned stream doesn't close the response
+     */
+    @NonNull
+    public BufferedInputStream getContent() throws IOException {
+        if (mBody != null) {
+            throw new IllegalStateException("Content is already obtained");
+        }
+        try {
+            mBody = new BodyInputStream(mConnection.getInputStream());
+            return new BufferedInputStream(
+                    EncodingHelper.decodeContent(mBody, getHeader(HEADER_CONTENT_ENCODING)));
+        } catch (IOException e) {
+            throw Fetcher.translateException(e, mRequest, mDeadline);
+        }
+    }
+
+    /**
+     * Number of bytes of response body received from network
+     */
+    public long getBytesRead() {
+        BodyInputStream body = mBody;
+        return body == null ? 0L : body.mBytesRead;
+    }
+
+    /**
+     * Close response without reading the rest of the body, connection is closed immediately
+     */
+    public void abort() {
+        mAborted = true;
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (!mClosed.compareAndSet(false, true)) {
+            return;
+        }
+        mWatchdog.cancel(false);
+        try {
+            if (mAborted || !drain()) {
+                mConnection.disconnect();
+            }
+        } finally {
+            mRequest.attach(null);
+            Fetcher.releasePermit(mPermits);
+        }
+    }
+
+    /**
+     * Read rest of the body (if it is small enough) to leave connection reusable
+     */
+    private boolean drain() {
+        try {
+            if (mBody == null) {
+                InputStream input;
+                try {
+                    input = mConnection.getInputStream();
+                } catch (IOException e) {
+                    input = mConnection.getErrorStream();
+                }
+                if (input == null) {
+                    return true;
+                }
+                mBody = new BodyInputStream(input);
+            }
+            BodyInputStream body = mBody;
+            if (!body.mEndReached) {
+                body.mLimited = false;
+                byte[] buffer = new byte[1024];
+                for (long drained = 0; drained < DRAIN_LIMIT; ) {
+                    int read = body.read(buffer);
+                    if (read == -1) {
+                        break;
+                    }
+                    drained += read;
+                }
+            }
+            if (body.mEndReached) {
+                body.release();
+                return true;
+            } else {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long parseSeconds(@Nullable String value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Raw body stream, translates errors caused by cancellation and deadline,
+     * counts received bytes
+     */
+    private final class BodyInputStream extends FilterInputStream {
+        private final long mByteLimit = mRequest.getByteLimit();
+        private volatile long mBytesRead;
+        private boolean mEndReached;
+        private boolean mLimited = mByteLimit != FetchRequest.NO_BYTE_LIMIT;
+
+        private BodyInputStream(@NonNull InputStream input) {
+            super(input);
+        }
+
+        private void checkLimit() throws IOException {
+            if (mLimited && mBytesRead > mByteLimit) {
+                throw new ByteLimitExceededException(mByteLimit);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            Fetcher.checkState(mRequest, mDeadline);
+            try {
+                int result = in.read();
+                if (result == -1) {
+                    mEndReached = true;
+                } else {
+                    mBytesRead++;
+                }
+                checkLimit();
+                return result;
+            } catch (IOException e) {
+                throw Fetcher.translateException(e, mRequest, mDeadline);
+            }
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            Fetcher.checkState(mRequest, mDeadline);
+            try {
+                int result = in.read(buffer, offset, length);
+                if (result == -1) {
+                    mEndReached = true;
+                } else {
+                    mBytesRead += result;
+                }
+                checkLimit();
+                return result;
+            } catch (IOException e) {
+                throw Fetcher.translateException(e, mRequest, mDeadline);
+            }
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(count, 1024L)];
+            long skipped = 0;
+            while (skipped < count) {
+                int read = read(buffer, 0, (int) Math.min(count - skipped, buffer.length));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // Connection is released by the response
+        }
+
+        private void release() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.fetch;
+
+import android.support.annotation.NonNull;
+
+import com.budiyev.rssreader.helper.EncodingHelper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HTTP fetch engine
+ * <br>
+ * Connections are kept alive and reused by the platform connection pool with its default
+ * settings, as long as every {@link FetchResponse} is closed. Number of simultaneous connections to the same
+ * host is limited, every request has connect, read and overall time limits
+ * and can be cancelled.
+ */
+public final class Fetcher {
+    /**
+     * Maximum number of simultaneous connections to the same host
+     */
+    public static final int MAX_CONNECTIONS_PER_HOST = 2;
+    private static final long PERMIT_POLL_INTERVAL = 500L;
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final Map<String, HostPermits> HOST_PERMITS = new HashMap<>();
+    private static final Lock WATCHDOG_LOCK = new ReentrantLock();
+    private static volatile ScheduledExecutorService sWatchdog;
+
+    private Fetcher() {
+    }
+
+    /**
+     * Execute request, blocks until response headers are received
+     * <br>
+     * Returned response holds one of the host connections and must be closed
+     *
+     * @param request Request
+     * @return Response
+     * @throws SocketTimeoutException if one of time limits is exceeded
+     * @throws InterruptedIOException if request is cancelled
+     * @throws IOException            if any other I/O error occurs
+     */
+    @NonNull
+    public static FetchResponse fetch(@NonNull FetchRequest request) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.getDeadline());
+        URL url = new URL(request.getUrl());
+        HostPermits permits = obtainHostPermits(url);
+        try {
+            acquirePermit(request, permits, deadline);
+        } catch (IOException e) {
+            releaseHostPermits(permits);
+            throw e;
+        }
+        HttpURLConnection connection = null;
+        Future<?> watchdog = null;
+        boolean success = false;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            request.attach(connection);
+            watchdog = getWatchdog()
+                    .schedule(new DeadlineAction(connection), getRemainingMillis(deadline),
+                            TimeUnit.MILLISECONDS);
+            connection.setConnectTimeout(getTimeout(request.getConnectTimeout(), deadline));
+            connection.setReadTimeout(getTimeout(request.getReadTimeout(), deadline));
+            String entityTag = request.getEntityTag();
+            if (entityTag != null) {
+                connection.setRequestProperty(HEADER_IF_NONE_MATCH, entityTag);
+            }
+            String lastModified = request.getLastModified();
+            if (lastModified != null) {
+                connection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+            }
+            connection.setRequestProperty(HEADER_ACCEPT_ENCODING, EncodingHelper.ACCEPT_ENCODING);
+            int code = connection.getResponseCode();
+            checkState(request, deadline);
+            FetchResponse response =
+                    new FetchResponse(request, connection, code, permits, watchdog, deadline);
+            success = true;
+            return response;
+        } catch (IOException e) {
+            throw translateException(e, request, deadline);
+        } finally {
+            if (!success) {
+                if (watchdog != null) {
+                    watchdog.cancel(false);
+                }
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                request.attach(null);
+                releasePermit(permits);
+            }
+        }
+    }
+
+    /**
+     * Release connection permit of the host that was acquired by {@link #fetch(FetchRequest)}
+     */
+    static void releasePermit(@NonNull HostPermits permits) {
+        permits.release();
+        releaseHostPermits(permits);
+    }
+
+    /**
+     * Throw exception if request is cancelled or deadline is exceeded
+     */
+    static void checkState(@NonNull FetchRequest request, long deadline) throws IOException {
+        if (request.isCancelled()) {
+            throw new InterruptedIOException("Request is cancelled");
+        }
+        if (System.nanoTime() - deadline >= 0) {
+            throw new SocketTimeoutException("Request deadline exceeded");
+        }
+    }
+
+    /**
+     * Disconnection caused by cancellation or deadline causes arbitrary I/O errors,
+     * report them properly
+     */
+    @NonNull
+    static IOException translateException(@NonNull IOException exception,
+            @NonNull FetchRequest request, long deadline) {
+        try {
+            checkState(request, deadline);
+            return exception;
+        } catch (IOException e) {
+            e.initCause(exception);
+            return e;
+        }
+    }
+
+    private static long getRemainingMillis(long deadline) {
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    private static int getTimeout(int timeout, long deadline) {
+        return (int) Math.max(1L, Math.min(timeout, getRemainingMillis(deadline)));
+    }
+
+    private static void acquirePermit(@NonNull FetchRequest request, @NonNull Semaphore permits,
+            long deadline) throws IOException {
+        try {
+            for (; ; ) {
+                checkState(request, deadline);
+                long timeout = Math.min(PERMIT_POLL_INTERVAL, getRemainingMillis(deadline));
+                if (permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for connection");
+        }
+    }
+
+    /**
+     * Permits of the host, must be released by {@link #releaseHostPermits(HostPermits)}
+     * <br>
+     * Permits are shared while the host has requests, then they are dropped,
+     * so that permits of hosts that aren't fetched anymore don't pile up
+     */
+    @NonNull
+    private static HostPermits obtainHostPermits(@NonNull URL url) {
+        int port = url.getPort();
+        if (port == -1) {
+            port = url.getDefaultPort();
+        }
+        String host = url.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+        synchronized (HOST_PERMITS) {
+            HostPermits permits = HOST_PERMITS.get(host);
+            if (permits == null) {
+                permits = new HostPermits(host);
+                HOST_PERMITS.put(host, permits);
+            }
+            permits.mUsers++;
+            return permits;
+        }
+    }
+
+    private static void releaseHostPermits(@NonNull HostPermits permits) {
+        synchronized (HOST_PERMITS) {
+            if (--permits.mUsers == 0) {
+                HOST_PERMITS.remove(permits.mHost);
+            }
+        }
+    }
+
+    @NonNull
+    private static ScheduledExecutorService getWatchdog() {
+        ScheduledExecutorService watchdog = sWatchdog;
+        if (watchdog == null) {
+            WATCHDOG_LOCK.lock();
+            try {
+                watchdog = sWatchdog;
+                if (watchdog == null) {
+                    watchdog = new ScheduledThreadPoolExecutor(1, new WatchdogThreadFactory());
+                    sWatchdog = watchdog;
+                }
+            } finally {
+                WATCHDOG_LOCK.unlock();
+            }
+        }
+        return watchdog;
+    }
+
+    /**
+     * Connection permits of the host with the number of requests that use them
+     */
+    static final class HostPermits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+        private final String mHost;
+        private int mUsers;
+
+        private HostPermits(@NonNull String host) {
+            super(MAX_CONNECTIONS_PER_HOST, true);
+            mHost = host;
+        }
+    }
+
+    private static final class DeadlineAction implements Runnable {
+        private final HttpURLConnection mConnection;
+
+        private DeadlineAction(@NonNull HttpURLConnection connection) {
+            mConnection = connection;
+        }
+
+        @Override
+        public void run() {
+            mConnection.disconnect();
+        }
+    }
+
+    private static final class WatchdogThreadFactory implements ThreadFactory {
+        private static final String NAME = "Simply RSS fetch watchdog";
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.fetch;
+
+import java.io.IOException;
+
+/**
+ * Server responded with unexpected status code
+ */
+public class ResponseCodeException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final int mCode;
+
+    public ResponseCodeException(int code) {
+        super("Unexpected response code: " + code);
+        mCode = code;
+    }
+
+    public int getCode() {
+        return mCode;
+    }
+
+    /**
+     * Whether if the resource doesn't exist anymore ({@code 404 Not Found}
+     * or {@code 410 Gone})
+     */
+    public boolean isGone() {
+        return mCode == 404 || mCode == 410;
+    }
+
+    /**
+     * Whether if the server itself is failing or overloaded ({@code 5xx}
+     * or {@code 429 Too Many Requests})
+     */
+    public boolean isServerFailure() {
+        return mCode >= 500 || mCode == 429;
+    }
+}
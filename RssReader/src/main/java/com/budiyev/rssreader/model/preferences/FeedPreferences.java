@@ -0,0 +1,300 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.rssreader.model.preferences;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.budiyev.rssreader.helper.UrlHelper;
+import com.budiyev.rssreader.model.data.PollHints;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Fetch state of feeds and hosts: validators, failures, poll hints and publish statistics
+ * <br>
+ * State is kept apart from {@link Preferences}, so that frequent updates don't rewrite
+ * the main preferences file. Values are written only when they change, default values
+ * aren't stored, feed state is keyed by normalized URL-address, see
+ * {@link UrlHelper#normalize(String)}
+ */
+public final class FeedPreferences {
+    private static final String PREFERENCES_NAME = "rss_reader_feeds";
+    private static final String PREFIX_ENTITY_TAG = "entity_tag_";
+    private static final String PREFIX_LAST_MODIFIED = "last_modified_";
+    private static final String PREFIX_FAILURE_COUNT = "failure_count_";
+    private static final String PREFIX_RETRY_TIME = "retry_time_";
+    private static final String PREFIX_GONE_COUNT = "gone_count_";
+    private static final String PREFIX_GONE_TIME = "gone_time_";
+    private static final String PREFIX_TIME_TO_LIVE = "time_to_live_";
+    private static final String PREFIX_PUBLISHER_INTERVAL = "publisher_interval_";
+    private static final String PREFIX_SKIP_HOURS = "skip_hours_";
+    private static final String PREFIX_SKIP_DAYS = "skip_days_";
+    private static final String PREFIX_EXPIRATION_TIME = "expiration_time_";
+    private static final String PREFIX_PUBLISH_INTERVAL = "publish_interval_";
+    private static final String PREFIX_PUBLISH_TIME = "publish_time_";
+    private static final String PREFIX_HOST_FAILURE_COUNT = "host_failure_count_";
+    private static final String PREFIX_HOST_RETRY_TIME = "host_retry_time_";
+    private static final String[] FEED_PREFIXES =
+            {PREFIX_ENTITY_TAG, PREFIX_LAST_MODIFIED, PREFIX_FAILURE_COUNT, PREFIX_RETRY_TIME,
+                    PREFIX_GONE_COUNT, PREFIX_GONE_TIME, PREFIX_TIME_TO_LIVE,
+                    PREFIX_PUBLISHER_INTERVAL, PREFIX_SKIP_HOURS, PREFIX_SKIP_DAYS,
+                    PREFIX_EXPIRATION_TIME, PREFIX_PUBLISH_INTERVAL, PREFIX_PUBLISH_TIME};
+    private static final String[] HOST_PREFIXES =
+            {PREFIX_HOST_FAILURE_COUNT, PREFIX_HOST_RETRY_TIME};
+
+    private FeedPreferences() {
+    }
+
+    @NonNull
+    private static SharedPreferences getPreferences(@NonNull Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static void setValidators(@NonNull Context context, @NonNull String url,
+            @Nullable String entityTag, @Nullable String lastModified) {
+        new Writer(context).putString(PREFIX_ENTITY_TAG + url, entityTag)
+                .putString(PREFIX_LAST_MODIFIED + url, lastModified).apply();
+    }
+
+    @Nullable
+    public static String getEntityTag(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context).getString(PREFIX_ENTITY_TAG + url, null);
+    }
+
+    @Nullable
+    public static String getLastModified(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context).getString(PREFIX_LAST_MODIFIED + url, null);
+    }
+
+    public static void removeFailure(@NonNull Context context, @NonNull String url) {
+        setFailure(context, url, 0, Constants.NOT_DEFINED, 0, Constants.NOT_DEFINED);
+    }
+
+    public static void setFailure(@NonNull Context context, @NonNull String url, int count,
+            long retryTime, int goneCount, long goneTime) {
+        new Writer(context).putInt(PREFIX_FAILURE_COUNT + url, count, 0)
+                .putLong(PREFIX_RETRY_TIME + url, retryTime)
+                .putInt(PREFIX_GONE_COUNT + url, goneCount, 0)
+                .putLong(PREFIX_GONE_TIME + url, goneTime).apply();
+    }
+
+    public static int getFailureCount(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context).getInt(PREFIX_FAILURE_COUNT + url, 0);
+    }
+
+    public static long getRetryTime(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context).getLong(PREFIX_RETRY_TIME + url, Constants.NOT_DEFINED);
+    }
+
+    public static int getGoneCount(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context).getInt(PREFIX_GONE_COUNT + url, 0);
+    }
+
+    public static long getGoneTime(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context).getLong(PREFIX_GONE_TIME + url, Constants.NOT_DEFINED);
+    }
+
+    public static void removeHostFailure(@NonNull Context context, @NonNull String host) {
+        setHostFailure(context, host, 0, Constants.NOT_DEFINED);
+    }
+
+    public static void setHostFailure(@NonNull Context context, @NonNull String host, int count,
+            long retryTime) {
+        new Writer(context).putInt(PREFIX_HOST_FAILURE_COUNT + host, count, 0)
+                .putLong(PREFIX_HOST_RETRY_TIME + host, retryTime).apply();
+    }
+
+    public static int getHostFailureCount(@NonNull Context context, @NonNull String host) {
+        return getPreferences(context).getInt(PREFIX_HOST_FAILURE_COUNT + host, 0);
+    }
+
+    public static long getHostRetryTime(@NonNull Context context, @NonNull String host) {
+        return getPreferences(context)
+                .getLong(PREFIX_HOST_RETRY_TIME + host, Constants.NOT_DEFINED);
+    }
+
+    public static void setPollHints(@NonNull Context context, @NonNull String url,
+            @NonNull PollHints hints) {
+        new Writer(context).putLong(PREFIX_TIME_TO_LIVE + url, hints.getTimeToLive())
+                .putLong(PREFIX_PUBLISHER_INTERVAL + url, hints.getUpdateInterval())
+                .putInt(PREFIX_SKIP_HOURS + url, hints.getSkipHours(), 0)
+                .putInt(PREFIX_SKIP_DAYS + url, hints.getSkipDays(), 0).apply();
+    }
+
+    @NonNull
+    public static PollHints getPollHints(@NonNull Context context, @NonNull String url) {
+        SharedPreferences preferences = getPreferences(context);
+        return new PollHints(
+                preferences.getLong(PREFIX_TIME_TO_LIVE + url, Constants.NOT_DEFINED),
+                preferences.getLong(PREFIX_PUBLISHER_INTERVAL + url, Constants.NOT_DEFINED),
+                preferences.getInt(PREFIX_SKIP_HOURS + url, 0),
+                preferences.getInt(PREFIX_SKIP_DAYS + url, 0));
+    }
+
+    public static void setExpirationTime(@NonNull Context context, @NonNull String url,
+            long time) {
+        new Writer(context).putLong(PREFIX_EXPIRATION_TIME + url, time).apply();
+    }
+
+    public static long getExpirationTime(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context)
+                .getLong(PREFIX_EXPIRATION_TIME + url, Constants.NOT_DEFINED);
+    }
+
+    public static void setPublishStats(@NonNull Context context, @NonNull String url,
+            long interval, long time) {
+        new Writer(context).putLong(PREFIX_PUBLISH_INTERVAL + url, interval)
+                .putLong(PREFIX_PUBLISH_TIME + url, time).apply();
+    }
+
+    public static long getPublishInterval(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context)
+                .getLong(PREFIX_PUBLISH_INTERVAL + url, Constants.NOT_DEFINED);
+    }
+
+    public static long getPublishTime(@NonNull Context context, @NonNull String url) {
+        return getPreferences(context).getLong(PREFIX_PUBLISH_TIME + url, Constants.NOT_DEFINED);
+    }
+
+    /**
+     * Delete all state of the feed
+     *
+     * @param context Context
+     * @param url     Normalized URL-address of the feed
+     */
+    public static void removeFeed(@NonNull Context context, @NonNull String url) {
+        Writer writer = new Writer(context);
+        for (String prefix : FEED_PREFIXES) {
+            writer.remove(prefix + url);
+        }
+        writer.apply();
+    }
+
+    /**
+     * Delete state of all feeds except specified ones and of hosts that aren't hosts
+     * of specified feeds
+     *
+     * @param context Context
+     * @param urls    Normalized URL-addresses of the feeds to keep
+     */
+    public static void retainFeeds(@NonNull Context context, @NonNull Collection<String> urls) {
+        Set<String> hosts = new HashSet<>();
+        for (String url : urls) {
+            hosts.add(UrlHelper.getHost(url));
+        }
+        Writer writer = new Writer(context);
+        for (String key : getPreferences(context).getAll().keySet()) {
+            if (!isRetained(key, FEED_PREFIXES, urls) || !isRetained(key, HOST_PREFIXES, hosts)) {
+                writer.remove(key);
+            }
+        }
+        writer.apply();
+    }
+
+    private static boolean isRetained(@NonNull String key, @NonNull String[] prefixes,
+            @NonNull Collection<String> suffixes) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return suffixes.contains(key.substring(prefix.length()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Editor that is opened and applied only if some value is changed,
+     * default values are removed instead of being stored
+     */
+    private static final class Writer {
+        private final SharedPreferences mPreferences;
+        private SharedPreferences.Editor mEditor;
+
+        private Writer(@NonNull Context context) {
+            mPreferences = getPreferences(context);
+        }
+
+        @NonNull
+        private Writer putString(@NonNull String key, @Nullable String value) {
+            if (value == null) {
+                return remove(key);
+            }
+            if (!value.equals(mPreferences.getString(key, null))) {
+                edit().putString(key, value);
+            }
+            return this;
+        }
+
+        @NonNull
+        private Writer putLong(@NonNull String key, long value) {
+            if (value == Constants.NOT_DEFINED) {
+                return remove(key);
+            }
+            if (!mPreferences.contains(key) ||
+                    mPreferences.getLong(key, Constants.NOT_DEFINED) != value) {
+                edit().putLong(key, value);
+            }
+            return this;
+        }
+
+        @NonNull
+        private Writer putInt(@NonNull String key, int value, int defaultValue) {
+            if (value == defaultValue) {
+                return remove(key);
+            }
+            if (mPreferences.getInt(key, defaultValue) != value) {
+                edit().putInt(key, value);
+            }
+            return this;
+        }
+
+        @NonNull
+        private Writer remove(@NonNull String key) {
+            if (mPreferences.contains(key)) {
+                edit().remove(key);
+            }
+            return this;
+        }
+
+        private void apply() {
+            if (mEditor != null) {
+                mEditor.apply();
+            }
+        }
+
+        @NonNull
+        private SharedPreferences.Editor edit() {
+            SharedPreferences.Editor editor = mEditor;
+            if (editor == null) {
+                editor = mPreferences.edit();
+                mEditor = editor;
+            }
+            return editor;
+        }
+    }
+}
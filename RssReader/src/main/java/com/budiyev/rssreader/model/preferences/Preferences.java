@@ -29,13 +29,17 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.budiyev.rssreader.helper.CsvParser;
-import com.budiyev.rssreader.helper.StringRow;
-import com.budiyev.rssreader.helper.StringTable;
+import com.budiyev.rssreader.helper.CsvRow;
+import com.budiyev.rssreader.helper.CsvWriter;
 import com.budiyev.rssreader.helper.UpdateIntervalHelper;
 import com.budiyev.rssreader.model.data.FeedInfo;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class Preferences {
     private static final String PREFERENCES_NAME = "rss_reader_main";
@@ -45,6 +49,14 @@ public final class Preferences {
     private static final String PREFIX_POSITION = "position_";
     private static final String PREFIX_UPDATE_INTERVAL = "update_interval_";
     private static final String PREFIX_UPDATE_TIME = "update_time_";
+    /**
+     * Prefixes of fetch state keys that were stored here before {@link FeedPreferences}
+     */
+    private static final String[] LEGACY_FEED_PREFIXES =
+            {"entity_tag_", "last_modified_", "failure_count_", "retry_time_", "gone_count_",
+                    "gone_time_", "host_failure_count_", "host_retry_time_", "time_to_live_",
+                    "publisher_interval_", "skip_hours_", "skip_days_", "expiration_time_",
+                    "publish_interval_", "publish_time_"};
     private static final String KEY_INFO_LIST = "info_list";
     private static final String NULL_STRING = "null";
 
@@ -96,6 +108,43 @@ public final class Preferences {
         return getPreferences(context).getString(getUrlKey(widgetId), null);
     }
 
+    /**
+     * URL-addresses of feeds of all widgets
+     */
+    @NonNull
+    public static Set<String> getUrls(@NonNull Context context) {
+        Set<String> urls = new HashSet<>();
+        for (Map.Entry<String, ?> entry : getPreferences(context).getAll().entrySet()) {
+            Object value = entry.getValue();
+            if (entry.getKey().startsWith(PREFIX_URL) && value instanceof String) {
+                urls.add((String) value);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Delete fetch state of feeds that was stored here before {@link FeedPreferences}
+     */
+    public static void removeLegacyFeedState(@NonNull Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        SharedPreferences.Editor editor = null;
+        for (String key : preferences.getAll().keySet()) {
+            for (String prefix : LEGACY_FEED_PREFIXES) {
+                if (key.startsWith(prefix)) {
+                    if (editor == null) {
+                        editor = preferences.edit();
+                    }
+                    editor.remove(key);
+                    break;
+                }
+            }
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+    }
+
     public static void removeInfoList(@NonNull Context context) {
         getPreferences(context).edit().remove(KEY_INFO_LIST).apply();
     }
@@ -164,46 +213,85 @@ public final class Preferences {
         return getPreferences(context).getLong(getUpdateTimeKey(widgetId), Constants.NOT_DEFINED);
     }
 
+    /**
+     * Cell of the row, {@code "null"} is decoded as {@code null}
+     */
     @Nullable
-    public static String getCell(@NonNull StringRow row, int column) {
-        return validate(row.cell(column));
+    public static String getCell(@NonNull CsvRow row, int column) {
+        CharSequence cell = row.cell(column);
+        return isNullString(cell) ? null : cell.toString();
+    }
+
+    /**
+     * Write info in CSV format, {@code null} fields are written as {@code "null"}
+     */
+    public static void writeInfo(@NonNull CsvWriter writer, @NonNull FeedInfo info) throws
+            IOException {
+        writer.cell(info.getAddress()).cell(info.getTitle()).cell(info.getDescription())
+                .cell(info.getLink()).cell(info.getLanguage()).cell(info.getCopyright())
+                .cell(info.getPublishDate()).endRow();
+    }
+
+    /**
+     * Read info of the row written by {@link #writeInfo(CsvWriter, FeedInfo)}
+     *
+     * @return Info or {@code null} if the row isn't an info row
+     */
+    @Nullable
+    public static FeedInfo readInfo(@NonNull CsvRow row) {
+        if (row.size() != Constants.COLUMNS_COUNT_INFO) {
+            return null;
+        }
+        return new FeedInfo(getCell(row, Constants.COLUMN_INFO_ADDRESS),
+                getCell(row, Constants.COLUMN_INFO_TITLE),
+                getCell(row, Constants.COLUMN_INFO_DESCRIPTION),
+                getCell(row, Constants.COLUMN_INFO_LINK),
+                getCell(row, Constants.COLUMN_INFO_LANGUAGE),
+                getCell(row, Constants.COLUMN_INFO_COPYRIGHT),
+                getCell(row, Constants.COLUMN_INFO_PUBLISH_DATE));
     }
 
     @NonNull
     private static String encodeInfoList(@NonNull List<FeedInfo> feedInfoList) {
-        StringTable table = new StringTable();
-        for (FeedInfo info : feedInfoList) {
-            table.add(info.getAddress(), info.getTitle(), info.getDescription(), info.getLink(),
-                    info.getLanguage(), info.getCopyright(), info.getPublishDate());
+        StringBuilder builder = new StringBuilder();
+        CsvWriter writer = new CsvWriter(builder, Constants.CSV_SEPARATOR);
+        try {
+            for (FeedInfo info : feedInfoList) {
+                writeInfo(writer, info);
+            }
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new IllegalStateException(e);
         }
-        return CsvParser.encode(table, Constants.CSV_SEPARATOR);
+        return builder.toString();
     }
 
     @Nullable
     private static List<FeedInfo> decodeInfoList(@NonNull String infoString) {
-        StringTable table = CsvParser.parse(infoString, Constants.CSV_SEPARATOR);
-        List<FeedInfo> feedInfoList = new ArrayList<>(table.size());
-        for (StringRow row : table) {
-            if (row.size() != Constants.COLUMNS_COUNT_INFO) {
-                continue;
+        final List<FeedInfo> feedInfoList = new ArrayList<>();
+        CsvParser.parse(infoString, Constants.CSV_SEPARATOR, new CsvParser.RowVisitor() {
+            @Override
+            public boolean visit(@NonNull CsvRow row) {
+                FeedInfo info = readInfo(row);
+                if (info != null) {
+                    feedInfoList.add(info);
+                }
+                return true;
             }
-            feedInfoList.add(new FeedInfo(getCell(row, Constants.COLUMN_INFO_ADDRESS),
-                    getCell(row, Constants.COLUMN_INFO_TITLE),
-                    getCell(row, Constants.COLUMN_INFO_DESCRIPTION),
-                    getCell(row, Constants.COLUMN_INFO_LINK),
-                    getCell(row, Constants.COLUMN_INFO_LANGUAGE),
-                    getCell(row, Constants.COLUMN_INFO_COPYRIGHT),
-                    getCell(row, Constants.COLUMN_INFO_PUBLISH_DATE)));
-        }
+        });
         return feedInfoList.isEmpty() ? null : feedInfoList;
     }
 
-    @Nullable
-    private static String validate(@Nullable String string) {
-        if (string == null || string.equalsIgnoreCase(NULL_STRING)) {
-            return null;
-        } else {
-            return string;
+    private static boolean isNullString(@NonNull CharSequence string) {
+        int length = NULL_STRING.length();
+        if (string.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(string.charAt(i)) != NULL_STRING.charAt(i)) {
+                return false;
+            }
         }
+        return true;
     }
 }
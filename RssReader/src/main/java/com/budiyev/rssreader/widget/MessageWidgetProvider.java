@@ -49,6 +49,8 @@ import com.budiyev.rssreader.helper.TextHelper;
 import com.budiyev.rssreader.helper.UpdateIntervalHelper;
 import com.budiyev.rssreader.helper.UrlHelper;
 import com.budiyev.rssreader.helper.WakeLockHelper;
+import com.budiyev.rssreader.model.FailureTracker;
+import com.budiyev.rssreader.model.PollScheduler;
 import com.budiyev.rssreader.model.Provider;
 import com.budiyev.rssreader.model.Repository;
 import com.budiyev.rssreader.model.data.Feed;
@@ -67,6 +69,7 @@ public class MessageWidgetProvider extends AppWidgetProvider {
     public static final String EXTRA_URL_CHANGED = "url_changed";
     public static final String EXTRA_UPDATE_INTERVAL_CHANGED = "update_interval_changed";
     private static final String WAKE_LOCK_TAG = MessageWidgetProvider.class.getName();
+    private static final String PIN_OWNER_PREFIX = "widget_";
     private static final String ACTION_UPDATE_DATA =
             "com.yotatest.budiyev.rssreader.widget.ACTION_UPDATE_DATA";
     private static final String ACTION_NEXT = "com.yotatest.budiyev.rssreader.widget.ACTION_NEXT";
@@ -95,6 +98,10 @@ public class MessageWidgetProvider extends AppWidgetProvider {
             }
             if (intent.getBooleanExtra(EXTRA_URL_CHANGED, false)) {
                 clearFeed(context, widgetId);
+                String url = Preferences.getUrl(context, widgetId);
+                if (url != null) {
+                    FailureTracker.reset(context, url);
+                }
                 Provider.updateFeed(context, widgetId, useWakeLock);
             }
             if (interval) {
@@ -163,7 +170,11 @@ public class MessageWidgetProvider extends AppWidgetProvider {
     public void onDeleted(Context context, int[] appWidgetIds) {
         for (int widgetId : appWidgetIds) {
             cancelUpdateDataAlarm(context, widgetId);
+            String url = Preferences.getUrl(context, widgetId);
             clearPreferences(context, widgetId);
+            if (url != null) {
+                Repository.forgetFeed(context, url);
+            }
         }
     }
 
@@ -202,6 +213,7 @@ public class MessageWidgetProvider extends AppWidgetProvider {
             remoteViews.setTextViewText(R.id.text, context.getText(R.string.invalid_url));
             remoteViews.setViewVisibility(R.id.refresh, View.GONE);
         } else {
+            Repository.pinFeed(context, getPinOwner(widgetId), url);
             Feed feed = Repository.getFeed(context, url);
             if (feed == null || feed.getMessages().isEmpty()) {
                 remoteViews = getErrorRemoteViews(context);
@@ -335,27 +347,56 @@ public class MessageWidgetProvider extends AppWidgetProvider {
     }
 
     private static void setUpdateDataAlarm(@NonNull Context context, int widgetId) {
-        setUpdateDataAlarm(context, widgetId, SystemClock.elapsedRealtime() + UpdateIntervalHelper
-                .getIntervalMillis(Preferences.getUpdateInterval(context, widgetId)));
+        long currentTime = System.currentTimeMillis();
+        setUpdateDataAlarm(context, widgetId, SystemClock.elapsedRealtime() +
+                getNextUpdateTime(context, widgetId, currentTime) - currentTime);
+    }
+
+    /**
+     * Time of the next update, adapted by {@link PollScheduler} to the feed,
+     * not earlier than update interval set by user
+     */
+    private static long getNextUpdateTime(@NonNull Context context, int widgetId,
+            long updateTime) {
+        long updateInterval = UpdateIntervalHelper
+                .getIntervalMillis(Preferences.getUpdateInterval(context, widgetId));
+        String url = Preferences.getUrl(context, widgetId);
+        if (TextUtils.isEmpty(url) || !UrlHelper.validate(url)) {
+            return updateTime + updateInterval;
+        }
+        return PollScheduler.getNextPollTime(context, url, updateTime, updateInterval);
     }
 
+    /**
+     * Set alarm at specified time or later, if feed fetches are held back
+     * by {@link FailureTracker}, no alarm is set for feeds that don't exist anymore
+     */
     private static void setUpdateDataAlarm(@NonNull Context context, int widgetId, long time) {
+        String url = Preferences.getUrl(context, widgetId);
+        if (url != null && UrlHelper.validate(url)) {
+            long retryTime = FailureTracker.getRetryTime(context, url);
+            if (retryTime == FailureTracker.RETRY_NEVER) {
+                return;
+            }
+            time = Math.max(time,
+                    SystemClock.elapsedRealtime() + retryTime - System.currentTimeMillis());
+        }
         getAlarmManager(context).set(AlarmManager.ELAPSED_REALTIME_WAKEUP, time,
                 getUpdateDataPendingIntent(context, widgetId));
     }
 
     private void setUpdateDataAlarmRemainingAndUpdateIfNeeded(@NonNull Context context,
             int widgetId) {
-        long updateInterval = UpdateIntervalHelper
-                .getIntervalMillis(Preferences.getUpdateInterval(context, widgetId));
         long updateTime = Preferences.getUpdateTime(context, widgetId);
-        long elapsedTime = System.currentTimeMillis() - updateTime;
-        if (updateTime == Constants.NOT_DEFINED || updateInterval <= elapsedTime) {
+        long currentTime = System.currentTimeMillis();
+        long nextUpdateTime = updateTime == Constants.NOT_DEFINED ? currentTime :
+                getNextUpdateTime(context, widgetId, updateTime);
+        if (nextUpdateTime <= currentTime) {
             Provider.updateFeed(context, widgetId);
             setUpdateDataAlarm(context, widgetId);
         } else {
             setUpdateDataAlarm(context, widgetId,
-                    SystemClock.elapsedRealtime() + updateInterval - elapsedTime);
+                    SystemClock.elapsedRealtime() + nextUpdateTime - currentTime);
         }
     }
 
@@ -383,6 +424,7 @@ public class MessageWidgetProvider extends AppWidgetProvider {
     }
 
     private static void clearPreferences(@NonNull Context context, int widgetId) {
+        Repository.pinFeed(context, getPinOwner(widgetId), null);
         Preferences.removeUrl(context, widgetId);
         Preferences.removeUpdateInterval(context, widgetId);
         Preferences.removeUpdateTime(context, widgetId);
@@ -394,6 +436,11 @@ public class MessageWidgetProvider extends AppWidgetProvider {
         Preferences.removePosition(context, widgetId);
     }
 
+    @NonNull
+    private static String getPinOwner(int widgetId) {
+        return PIN_OWNER_PREFIX + widgetId;
+    }
+
     private static int getRequestCode(int base, int widgetId) {
         return base + widgetId + 10000;
     }